@@ -0,0 +1,25 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the act of a single actor. Only a
+ * sample of acts are recorded, as recording every act would slow the
+ * simulation down.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+@Name("savannah.Act")
+@Label("Actor Act")
+@Category("Savannah")
+@Description("A sampled act of one actor")
+public class ActEvent extends jdk.jfr.Event
+{
+    @Label("Species")
+    String species;
+
+    @Label("Step")
+    int step;
+}
@@ -0,0 +1,92 @@
+import java.util.List;
+import jdk.jfr.EventType;
+
+/**
+ * Makes actors act, timing a sample of the acts for the step profiler
+ * and recording another sample as flight recorder events. Every way of
+ * stepping the actors acts through a timer, so the acts are measured
+ * the same way whichever is used.
+ *
+ * The two samples are taken independently: an act recorded for the
+ * flight recorder may also be timed for the profiler. When neither
+ * is on, an act costs one check more than calling it directly.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class ActTimer
+{
+    // One in this many acts is recorded for the flight recorder.
+    private static final int EVENT_SAMPLE_RATE = 64;
+    // The type of the sampled act events, to check whether they are wanted.
+    private static final EventType ACT_EVENT_TYPE = EventType.getEventType(ActEvent.class);
+
+    // The profiler to which sampled acts are reported, or null if none.
+    private StepProfiler profiler;
+    // Whether act events are recorded on the current step.
+    private boolean recordEvents;
+    // The current step.
+    private int step;
+    // The number of acts seen, for sampling events.
+    private int acts;
+
+    /**
+     * Create a timer that times no acts.
+     */
+    public ActTimer()
+    {
+        profiler = null;
+    }
+
+    /**
+     * Set the profiler to which sampled acts are reported.
+     * @param profiler The profiler, or null to time no acts for one.
+     */
+    public void setProfiler(StepProfiler profiler)
+    {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Start a new step, checking whether act events are wanted.
+     * @param step The current step.
+     */
+    public void beginStep(int step)
+    {
+        this.step = step;
+        recordEvents = ACT_EVENT_TYPE.isEnabled();
+    }
+
+    /**
+     * Make an actor act for a number of steps, timing the act if it
+     * is sampled.
+     * @param actor The actor.
+     * @param newActors A list to receive newly born actors.
+     * @param steps The number of steps the act stands for.
+     */
+    public void act(Actor actor, List<Actor> newActors, int steps)
+    {
+        boolean event = recordEvents && acts++ % EVENT_SAMPLE_RATE == 0;
+        boolean timed = profiler != null && profiler.sampleAct();
+        if(!event && !timed) {
+            actor.act(newActors, steps);
+            return;
+        }
+        ActEvent actEvent = null;
+        if(event) {
+            actEvent = new ActEvent();
+            actEvent.begin();
+        }
+        long start = System.nanoTime();
+        actor.act(newActors, steps);
+        long time = System.nanoTime() - start;
+        if(timed) {
+            profiler.recordAct(actor.getClass(), time);
+        }
+        if(event) {
+            actEvent.species = actor.getClass().getName();
+            actEvent.step = step;
+            actEvent.commit();
+        }
+    }
+}
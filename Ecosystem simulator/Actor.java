@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -14,8 +17,12 @@ public abstract class Actor
     protected Location location;
     // Whether the actor is alive or not.
     private boolean alive;
-    //The actor's age
-    protected int age;
+    // The step from which the actor's age is counted.
+    private int birthStep;
+    // The actor's current part of the field's hash, or 0 if none.
+    private long hashContribution;
+    // The number of actors that have died.
+    private static int deathCount;
 
     /**
      * Create a new Actor at location in field.
@@ -25,6 +32,7 @@ public abstract class Actor
      */
     public Actor(Field field, Location location){
         alive = true;
+        birthStep = Simulator.getStep();
         this.field = field;
         setLocation(location);
     }
@@ -45,12 +53,29 @@ public abstract class Actor
         alive = bool;
     }
     
+    /**
+     * Sets an Actor dead from the given cause, counting the cause of
+     * death, and removes it from the field.
+     * @param cause The cause of death, one of the DEATH counters of
+     * BehaviourCounters.
+     */
+    protected void setDead(int cause){
+        if(alive) {
+            BehaviourCounters.add(getClass(), cause, 1);
+        }
+        setDead();
+    }
+
     /**
      * Sets an Actor dead and removes it from the field.
      */
     protected void setDead(){
+        if(alive) {
+            deathCount++;
+        }
         setAlive(false);
         if(getLocation() != null) {
+            removeHashContribution();
             field.clear(location);
             location = null;
             field = null;
@@ -63,13 +88,95 @@ public abstract class Actor
      * @param newActors A list to receive newly born actors.
      */
     protected abstract void act(List<Actor> newActors);
+
+    /**
+     * Make this Actor act once for a number of steps, as when it
+     * does not act on every step. By default it acts as on one step.
+     * @param newActors A list to receive newly born actors.
+     * @param steps The number of steps the act stands for.
+     */
+    protected void act(List<Actor> newActors, int steps)
+    {
+        act(newActors);
+    }
     
     /**
-     * Gets the current age of the animal
+     * Gets the number of actors that have died so far.
+     * @return The number of deaths.
+     */
+    public static int getDeathCount()
+    {
+        return deathCount;
+    }
+
+    /**
+     * Gets the next step on which this Actor has something to do.
+     * By default an Actor acts on every step.
+     * @param step The current step.
+     * @return The step of the Actor's next event.
+     */
+    protected int getNextEventStep(int step)
+    {
+        return step + 1;
+    }
+
+    /**
+     * Gets the number of steps it takes this Actor to age by one.
+     * @return The number of steps per unit of age.
+     */
+    protected int getStepsPerAge()
+    {
+        return 1;
+    }
+
+    /**
+     * Gets the current age of the animal.
+     * The age is derived from the current step, so it does not
+     * need to be updated as the simulation runs.
      * @return The age of the animal
      */
     protected int getAge(){
-        return age;   
+        return (Simulator.getStep() - birthStep) / getStepsPerAge();   
+    }
+
+    /**
+     * Gets the step from which the Actor's age is counted.
+     * @return The Actor's birth step.
+     */
+    protected int getBirthStep()
+    {
+        return birthStep;
+    }
+
+    /**
+     * Sets the current age of the Actor.
+     * @param age The new age.
+     */
+    protected void setAge(int age)
+    {
+        birthStep = Simulator.getStep() - age * getStepsPerAge();
+        attributesChanged();
+    }
+
+    /**
+     * Makes the Actor older.
+     * @param years The amount to add to the Actor's age.
+     */
+    protected void addAge(int years)
+    {
+        birthStep -= years * getStepsPerAge();
+        attributesChanged();
+    }
+
+    /**
+     * Gets the step on which this Actor dies of old age.
+     * By default an Actor does not die of old age.
+     * @return The step of the Actor's death by old age, or
+     * Integer.MAX_VALUE if there is none.
+     */
+    protected int getExpiryStep()
+    {
+        return Integer.MAX_VALUE;
     }
     
     /**
@@ -97,9 +204,77 @@ public abstract class Actor
     public void setLocation(Location newLocation)
     {
         if(location != null) {
+            removeHashContribution();
             field.clear(location);
         }
         location = newLocation;
         field.place(this, newLocation);
+        attributesChanged();
+    }
+
+    /**
+     * Writes the Actor's state, other than its location, so that it
+     * can be restored with readState.
+     * @param out The output to write to.
+     * @throws IOException If the state cannot be written.
+     */
+    protected void writeState(DataOutput out) throws IOException
+    {
+        out.writeInt(birthStep);
+    }
+
+    /**
+     * Restores the Actor's state, other than its location, as
+     * written by writeState.
+     * @param in The input to read from.
+     * @throws IOException If the state cannot be read.
+     */
+    protected void readState(DataInput in) throws IOException
+    {
+        birthStep = in.readInt();
+        attributesChanged();
+    }
+
+    /**
+     * Gets a hash of the Actor's state, which is folded into the
+     * hash of its field.
+     * @return The hash of the Actor's state.
+     */
+    protected long getAttributeHash()
+    {
+        return birthStep;
+    }
+
+    /**
+     * Updates the Actor's part of the field's hash. This must be
+     * called whenever the state used by getAttributeHash changes.
+     */
+    protected void attributesChanged()
+    {
+        if(field == null || location == null) {
+            return;
+        }
+        field.toggleHash(hashContribution);
+        hashContribution = Field.mix(((long) field.cellIndex(location) << 32) ^ getAttributeHash());
+        field.toggleHash(hashContribution);
+    }
+
+    /**
+     * Gets the Actor's current part of the field's hash.
+     * @return The Actor's part of the hash, or 0 if none.
+     */
+    protected long getHashContribution()
+    {
+        return hashContribution;
+    }
+
+    /**
+     * Removes the Actor's part of the field's hash, before it
+     * leaves its location.
+     */
+    private void removeHashContribution()
+    {
+        field.toggleHash(hashContribution);
+        hashContribution = 0;
     }
 }
\ No newline at end of file
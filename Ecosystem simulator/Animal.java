@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 import java.util.Iterator;
 import java.util.Random;
@@ -24,11 +27,7 @@ public abstract class Animal extends Actor
     protected boolean isInfected;
     //The number of days the animal has been sick for
     protected int sickDays;
-    //A tracker that allows the synchronisation of age and time
-    private int ageTimeTracker = 0;
 
-    // A shared random number generator.
-    private static final Random rand = Randomizer.getRandom();
     /**
      * Create a new animal at location in field.
      * 
@@ -39,21 +38,23 @@ public abstract class Animal extends Actor
     public Animal(boolean randomAge, Field field, Location location)
     {
         super(field, location);
+        Random rand = Randomizer.getRandom();
         isInfected = false;
         sickDays = 0;
         setSleepSchedule();
 
         if(randomAge) {
-            age = (rand.nextInt(getMaxAge()));
+            setAge(rand.nextInt(getMaxAge()));
             setFoodLevel(rand.nextInt(getMaxFL()));
         }
         else{
-            age = 0;
+            setAge(0);
             setFoodLevel(getMaxFL());
         }
 
         setLocation(location);
         isMale = rand.nextBoolean();
+        attributesChanged();
     }
     
     /**
@@ -124,6 +125,7 @@ public abstract class Animal extends Actor
      */
     protected void setInfected(boolean bool){
         isInfected = bool;
+        attributesChanged();
     }
 
     /**
@@ -136,6 +138,7 @@ public abstract class Animal extends Actor
         if (foodLevel > getMaxFL()){
             foodLevel = getMaxFL();
         }
+        attributesChanged();
     }
 
     /**
@@ -155,8 +158,9 @@ public abstract class Animal extends Actor
     protected void incrementHunger()
     {
         foodLevel--;
+        attributesChanged();
         if(foodLevel <= 0) {
-            setDead();
+            setDead(BehaviourCounters.DEATH_STARVATION);
         }
     }  
 
@@ -203,8 +207,10 @@ public abstract class Animal extends Actor
         Field field = getField();
         List<Location> adjacent = field.adjacentLocations(getLocation(),1,1);
         Iterator<Location> it = adjacent.iterator();
+        int examined = 0;
         while(it.hasNext()) {
             Location where = it.next();
+            examined++;
             Object being = field.getObjectAt(where);
             Class myClass = this.getClass();
             if(being != null){
@@ -221,6 +227,7 @@ public abstract class Animal extends Actor
                         boolean prospGender = prospect.getGender();
                         boolean myGender = getGender();
                         if (myGender = !prospGender){
+                            count(BehaviourCounters.PARTNER_CELLS_EXAMINED, examined);
                             return true;
                         }
                     }
@@ -228,6 +235,7 @@ public abstract class Animal extends Actor
             } 
         }
 
+        count(BehaviourCounters.PARTNER_CELLS_EXAMINED, examined);
         return false;
     }
 
@@ -266,8 +274,9 @@ public abstract class Animal extends Actor
      */
     protected void setAsleep()
     {
-        if(Simulator.getTime() == bedtime) {
+        if(Simulator.getTime() == bedtime && awake) {
             awake = false;
+            attributesChanged();
         }
     }
     
@@ -275,8 +284,9 @@ public abstract class Animal extends Actor
      * Sets the animal's sleep status to awake 
      */
     protected void setAwake(){
-        if(Simulator.getTime() == waketime) {
+        if(Simulator.getTime() == waketime && !awake) {
             awake = true;
+            attributesChanged();
         }
     }
     
@@ -297,7 +307,8 @@ public abstract class Animal extends Actor
             if(food instanceof Grass) {
                 Grass grass = (Grass) food;
                 if(grass.isAlive()) {
-                    grass.setDead();
+                    grass.setDead(BehaviourCounters.DEATH_TRAMPLED);
+                    count(BehaviourCounters.IGNORE_GRASS_MOVES, 1);
                     return where;
                 }
             }
@@ -306,16 +317,106 @@ public abstract class Animal extends Actor
     }
     
     /**
-     * Increments the age of the animal
+     * Adds to one of this animal's species' behaviour counters.
+     * @param counter The counter, from BehaviourCounters.
+     * @param amount The amount to add.
      */
-    protected void incrementAge()
+    protected void count(int counter, int amount)
     {
-        ageTimeTracker++;
-        if(ageTimeTracker%3 == 0){
-            age++;
-            if(age > getMaxAge()) {
-                setDead();
-            }
+        BehaviourCounters.add(getClass(), counter, amount);
+    }
+
+    /**
+     * Gets the next step on which this animal has something to do.
+     * An awake animal acts on every step; a sleeping animal only
+     * needs to act again when it wakes up. Death by old age is
+     * handled separately through the animal's expiry step.
+     * @param step The current step.
+     * @return The step of the animal's next event.
+     */
+    protected int getNextEventStep(int step)
+    {
+        if(isAwake()) {
+            return step + 1;
+        }
+        return Simulator.nextStepAtTime(step, waketime);
+    }
+
+    /**
+     * Animals age once every hour, so that age is synchronised
+     * with the time of day.
+     * @return The number of steps per unit of age.
+     */
+    protected int getStepsPerAge()
+    {
+        return 3;
+    }
+
+    /**
+     * Gets the step on which this animal dies of old age, which is
+     * the first step on which its age exceeds the max age.
+     * @return The step of the animal's death by old age.
+     */
+    protected int getExpiryStep()
+    {
+        return getBirthStep() + (getMaxAge() + 1) * getStepsPerAge();
+    }
+
+    /**
+     * Gets a hash of the animal's state: its age, food level,
+     * health, sleep and gender.
+     * @return The hash of the animal's state.
+     */
+    protected long getAttributeHash()
+    {
+        long hash = super.getAttributeHash();
+        hash = hash * 31 + foodLevel;
+        hash = hash * 31 + sickDays;
+        hash = hash * 8 + (isInfected ? 4 : 0) + (awake ? 2 : 0) + (isMale ? 1 : 0);
+        return hash;
+    }
+
+    /**
+     * Writes the animal's state, other than its location.
+     * @param out The output to write to.
+     * @throws IOException If the state cannot be written.
+     */
+    protected void writeState(DataOutput out) throws IOException
+    {
+        super.writeState(out);
+        out.writeInt(foodLevel);
+        out.writeInt(sickDays);
+        out.writeBoolean(isInfected);
+        out.writeBoolean(awake);
+        out.writeBoolean(isMale);
+    }
+
+    /**
+     * Restores the animal's state, other than its location.
+     * @param in The input to read from.
+     * @throws IOException If the state cannot be read.
+     */
+    protected void readState(DataInput in) throws IOException
+    {
+        super.readState(in);
+        foodLevel = in.readInt();
+        sickDays = in.readInt();
+        isInfected = in.readBoolean();
+        awake = in.readBoolean();
+        isMale = in.readBoolean();
+        attributesChanged();
+    }
+
+    /**
+     * Makes the animal older through illness. The animal dies
+     * if this takes it past its max age.
+     * @param years The amount to add to the animal's age.
+     */
+    protected void addAge(int years)
+    {
+        super.addAge(years);
+        if(getAge() > getMaxAge()) {
+            setDead(BehaviourCounters.DEATH_OLD_AGE);
         }
     }
 }
@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts what the animals do on their hot paths: how many cells they
+ * examine when searching for food, partners and enemies, how often a
+ * search for food succeeds, how often they have to trample grass to
+ * move, and what each species dies of.
+ *
+ * Counts are added to primitive arrays local to the counting thread,
+ * with no locking, and gathered into per-step and running totals at
+ * the end of each step. When counting is off, adding a count costs a
+ * single check of a static flag.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class BehaviourCounters
+{
+    // The counters kept for each species.
+    public static final int FOOD_CELLS_EXAMINED = 0;
+    public static final int FOOD_SEARCHES = 1;
+    public static final int FOOD_FOUND = 2;
+    public static final int PARTNER_CELLS_EXAMINED = 3;
+    public static final int COMBAT_CELLS_EXAMINED = 4;
+    public static final int IGNORE_GRASS_MOVES = 5;
+    public static final int DEATH_STARVATION = 6;
+    public static final int DEATH_OLD_AGE = 7;
+    public static final int DEATH_PREDATION = 8;
+    public static final int DEATH_COMBAT = 9;
+    public static final int DEATH_OVERCROWDING = 10;
+    public static final int DEATH_TRAMPLED = 11;
+    // The names of the counters, for reports.
+    private static final String[] COUNTER_NAMES = {
+        "food cells", "food searches", "food found", "partner cells",
+        "combat cells", "grass trampled", "starved", "old age",
+        "eaten", "combat", "overcrowded", "trampled"
+    };
+    private static final int COUNTERS = COUNTER_NAMES.length;
+    // The number of species for which space is first made.
+    private static final int INITIAL_SPECIES = 8;
+
+    // The number given to each species, in order of first count.
+    private static final ClassValue<Integer> SPECIES_IDS = new ClassValue<Integer>() {
+        protected Integer computeValue(Class<?> species) {
+            synchronized(BehaviourCounters.class) {
+                speciesList.add(species);
+                return speciesList.size() - 1;
+            }
+        }
+    };
+    // The species counted so far, by number.
+    private static final List<Class<?>> speciesList = new ArrayList<>();
+    // The counts of each thread not yet gathered.
+    private static final List<long[][]> threadCounts = new ArrayList<>();
+    // The counts of the current thread, by species and counter.
+    private static final ThreadLocal<long[][]> localCounts = ThreadLocal.withInitial(() -> {
+        long[][] holder = new long[][] {new long[INITIAL_SPECIES * COUNTERS]};
+        synchronized(BehaviourCounters.class) {
+            threadCounts.add(holder);
+        }
+        return holder;
+    });
+
+    // Whether counts are being kept.
+    private static volatile boolean enabled;
+    // The totals for the last step, by species and counter.
+    private static long[] lastStep = new long[0];
+    // The totals for the whole run, by species and counter.
+    private static long[] totals = new long[0];
+
+    /**
+     * Start or stop counting.
+     * @param on true to count.
+     */
+    public static void setEnabled(boolean on)
+    {
+        enabled = on;
+    }
+
+    /**
+     * @return true if counts are being kept.
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Add to a count for a species.
+     * @param species The species.
+     * @param counter The counter.
+     * @param amount The amount to add.
+     */
+    public static void add(Class<?> species, int counter, int amount)
+    {
+        if(!enabled) {
+            return;
+        }
+        int index = SPECIES_IDS.get(species) * COUNTERS + counter;
+        long[][] holder = localCounts.get();
+        if(index >= holder[0].length) {
+            synchronized(BehaviourCounters.class) {
+                holder[0] = Arrays.copyOf(holder[0], Math.max(index + 1, holder[0].length * 2));
+            }
+        }
+        holder[0][index] += amount;
+    }
+
+    /**
+     * Gather the counts of all threads into the totals for the step
+     * that has just finished, and add them to the running totals.
+     */
+    public static synchronized void endStep()
+    {
+        int size = speciesList.size() * COUNTERS;
+        lastStep = new long[size];
+        if(totals.length < size) {
+            totals = Arrays.copyOf(totals, size);
+        }
+        for(long[][] holder : threadCounts) {
+            long[] counts = holder[0];
+            for(int i = 0; i < counts.length && i < size; i++) {
+                lastStep[i] += counts[i];
+                totals[i] += counts[i];
+                counts[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Clear all counts.
+     */
+    public static synchronized void reset()
+    {
+        for(long[][] holder : threadCounts) {
+            Arrays.fill(holder[0], 0);
+        }
+        lastStep = new long[0];
+        totals = new long[0];
+    }
+
+    /**
+     * Get a count for a species in the last step.
+     * @param species The species.
+     * @param counter The counter.
+     * @return The count.
+     */
+    public static synchronized long getLastStep(Class<?> species, int counter)
+    {
+        return get(lastStep, species, counter);
+    }
+
+    /**
+     * Get a count for a species over the whole run.
+     * @param species The species.
+     * @param counter The counter.
+     * @return The count.
+     */
+    public static synchronized long getTotal(Class<?> species, int counter)
+    {
+        return get(totals, species, counter);
+    }
+
+    /**
+     * Describe the running totals of every species, with the hit rate
+     * of their searches for food.
+     * @return A table of counts.
+     */
+    public static synchronized String getReport()
+    {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append(String.format("%-10s", "species"));
+        for(String name : COUNTER_NAMES) {
+            buffer.append(String.format(" %14s", name));
+        }
+        buffer.append(String.format(" %9s%n", "hit rate"));
+        for(Class<?> species : speciesList) {
+            buffer.append(String.format("%-10s", species.getName()));
+            for(int counter = 0; counter < COUNTERS; counter++) {
+                buffer.append(String.format(" %14d", get(totals, species, counter)));
+            }
+            long searches = get(totals, species, FOOD_SEARCHES);
+            double hitRate = searches == 0 ? 0 : (double) get(totals, species, FOOD_FOUND) / searches;
+            buffer.append(String.format(" %9.3f%n", hitRate));
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Get a count from a table of counts.
+     * @param table The counts, by species and counter.
+     * @param species The species.
+     * @param counter The counter.
+     * @return The count, or 0 if the species has none.
+     */
+    private static long get(long[] table, Class<?> species, int counter)
+    {
+        int index = SPECIES_IDS.get(species) * COUNTERS + counter;
+        return index < table.length ? table[index] : 0;
+    }
+}
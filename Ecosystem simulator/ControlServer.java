@@ -0,0 +1,392 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small HTTP server embedded in a simulation, for controlling and
+ * monitoring a run that has no view.
+ *
+ * The controls are POST requests:
+ * <ul>
+ * <li>/start?steps=N resumes a paused run, or else starts a run of N
+ * steps (4000 by default) on a thread of its own.</li>
+ * <li>/stop ends the run after the current step.</li>
+ * <li>/pause holds the run before its next step, until /start.</li>
+ * <li>/delay?ms=N waits N milliseconds after each step; 0 for none.</li>
+ * </ul>
+ * GET /metrics gives the state of the run in the Prometheus text
+ * format: the steps simulated and the recent steps per second, the
+ * number of actors, the population of each species, the number of
+ * infected animals, and the heap and garbage collection of the JVM.
+ *
+ * The simulation's figures are taken by the simulation's own thread at
+ * the end of each step, so requests never read the field while it is
+ * changing and never hold the simulation up.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class ControlServer implements AutoCloseable
+{
+    // The number of steps in a run started without a number.
+    private static final int DEFAULT_STEPS = 4000;
+    // The time over which the steps per second are measured.
+    private static final long RATE_WINDOW_NANOS = 10_000_000_000L;
+    // The least time between the samples used to measure the steps per second.
+    private static final long SAMPLE_NANOS = 100_000_000L;
+    // The number of samples kept, enough to cover the window.
+    private static final int SAMPLES = (int) (RATE_WINDOW_NANOS / SAMPLE_NANOS) + 1;
+
+    // The simulation controlled.
+    private Simulator simulator;
+    // The HTTP server.
+    private HttpServer server;
+    // The threads answering requests.
+    private ExecutorService workers;
+    // The thread of a run started by the server, or null.
+    private Thread runner;
+    // The figures of the simulation at the end of the last step.
+    private volatile Snapshot snapshot;
+    // The number of steps completed since the server started.
+    private long stepsCompleted;
+    // When recent steps were completed, and how many had been, oldest first.
+    private long[] sampleTimes;
+    private long[] sampleSteps;
+    // The number of samples taken.
+    private int sampleCount;
+
+    /**
+     * Start a server controlling a simulation.
+     * @param simulator The simulation.
+     * @param address The address to listen on, such as port 8080.
+     * @param threads The number of threads answering requests.
+     * @throws IOException If the server cannot listen on the address.
+     */
+    public ControlServer(Simulator simulator, InetSocketAddress address, int threads) throws IOException
+    {
+        this.simulator = simulator;
+        sampleTimes = new long[SAMPLES];
+        sampleSteps = new long[SAMPLES];
+        snapshot = new Snapshot();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "control-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(address, 0);
+        server.setExecutor(workers);
+        server.createContext("/start", control(this::start));
+        server.createContext("/stop", control(this::stop));
+        server.createContext("/pause", control(this::pause));
+        server.createContext("/delay", control(this::delay));
+        server.createContext("/metrics", this::metrics);
+        simulator.setControlServer(this);
+        server.start();
+    }
+
+    /**
+     * @return The address the server is listening on.
+     */
+    public InetSocketAddress getAddress()
+    {
+        return server.getAddress();
+    }
+
+    /**
+     * Take the figures of the simulation at the end of a step. This is
+     * called by the simulator, on the simulation's thread.
+     * @param simulator The simulator.
+     */
+    public void stepCompleted(Simulator simulator)
+    {
+        long now = System.nanoTime();
+        synchronized(this) {
+            stepsCompleted++;
+            int last = (sampleCount - 1) % SAMPLES;
+            if(sampleCount == 0 || now - sampleTimes[last] >= SAMPLE_NANOS) {
+                sampleTimes[sampleCount % SAMPLES] = now;
+                sampleSteps[sampleCount % SAMPLES] = stepsCompleted;
+                sampleCount++;
+            }
+        }
+        snapshot = new Snapshot(simulator, stepsCompleted);
+    }
+
+    /**
+     * Stop answering requests, and stop telling the simulation's
+     * figures to the server. A run started by the server carries on.
+     */
+    public void close()
+    {
+        simulator.setControlServer(null);
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    /**
+     * Resume the run if it is paused, or else start a new one.
+     * @param exchange The request.
+     * @return The reply.
+     */
+    private synchronized String start(HttpExchange exchange)
+    {
+        int steps = getParameter(exchange, "steps", DEFAULT_STEPS);
+        simulator.setPaused(false);
+        if(simulator.isRunning() || runner != null && runner.isAlive()) {
+            return "running";
+        }
+        simulator.setStopped(false);
+        runner = new Thread(() -> simulator.simulate(steps), "simulation");
+        runner.start();
+        return "started " + steps + " steps";
+    }
+
+    /**
+     * Stop the run after the current step.
+     * @param exchange The request.
+     * @return The reply.
+     */
+    private String stop(HttpExchange exchange)
+    {
+        simulator.setStopped(true);
+        return "stopped";
+    }
+
+    /**
+     * Hold the run before its next step.
+     * @param exchange The request.
+     * @return The reply.
+     */
+    private String pause(HttpExchange exchange)
+    {
+        simulator.setPaused(true);
+        return "paused";
+    }
+
+    /**
+     * Set the time to wait after each step.
+     * @param exchange The request.
+     * @return The reply.
+     */
+    private String delay(HttpExchange exchange)
+    {
+        int millis = getParameter(exchange, "ms", 0);
+        simulator.setDelay(millis);
+        return "delay " + simulator.getDelay() + " ms";
+    }
+
+    /**
+     * Answer a request for the metrics.
+     * @param exchange The request.
+     * @throws IOException If the reply cannot be sent.
+     */
+    private void metrics(HttpExchange exchange) throws IOException
+    {
+        if(!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, "GET only\n");
+            return;
+        }
+        Snapshot figures = snapshot;
+        StringBuilder text = new StringBuilder();
+        metric(text, "savannah_steps_total", "counter", "Steps simulated since the server started.");
+        text.append("savannah_steps_total ").append(figures.stepsCompleted).append('\n');
+        metric(text, "savannah_step", "gauge", "The simulation's current step.");
+        text.append("savannah_step ").append(figures.step).append('\n');
+        metric(text, "savannah_steps_per_second", "gauge", "Steps simulated per second, over the last ten seconds.");
+        text.append("savannah_steps_per_second ").append(getStepsPerSecond()).append('\n');
+        metric(text, "savannah_running", "gauge", "1 if a run is in progress, paused or not.");
+        text.append("savannah_running ").append(simulator.isRunning() ? 1 : 0).append('\n');
+        metric(text, "savannah_paused", "gauge", "1 if the run is paused.");
+        text.append("savannah_paused ").append(simulator.isPaused() ? 1 : 0).append('\n');
+        metric(text, "savannah_actors", "gauge", "Actors being simulated.");
+        text.append("savannah_actors ").append(figures.actorCount).append('\n');
+        metric(text, "savannah_population", "gauge", "Members of each species in the field.");
+        for(Map.Entry<String, Integer> entry : figures.populations.entrySet()) {
+            text.append("savannah_population{species=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue()).append('\n');
+        }
+        metric(text, "savannah_infected", "gauge", "Animals carrying the disease.");
+        text.append("savannah_infected ").append(figures.infected).append('\n');
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        metric(text, "jvm_heap_used_bytes", "gauge", "Heap in use.");
+        text.append("jvm_heap_used_bytes ").append(heap.getUsed()).append('\n');
+        metric(text, "jvm_heap_committed_bytes", "gauge", "Heap committed by the JVM.");
+        text.append("jvm_heap_committed_bytes ").append(heap.getCommitted()).append('\n');
+        metric(text, "jvm_heap_max_bytes", "gauge", "The largest the heap may grow.");
+        text.append("jvm_heap_max_bytes ").append(heap.getMax()).append('\n');
+        long collections = 0;
+        long collectionMillis = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            collectionMillis += Math.max(0, collector.getCollectionTime());
+        }
+        metric(text, "jvm_gc_collections_total", "counter", "Garbage collections.");
+        text.append("jvm_gc_collections_total ").append(collections).append('\n');
+        metric(text, "jvm_gc_collection_seconds_total", "counter", "Time spent collecting garbage.");
+        text.append("jvm_gc_collection_seconds_total ").append(collectionMillis / 1000.0).append('\n');
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        respond(exchange, 200, text.toString());
+    }
+
+    /**
+     * Return the number of steps completed per second, over the
+     * last ten seconds or since the server started, if sooner.
+     * @return The steps per second, or 0 if too few steps are known.
+     */
+    private synchronized double getStepsPerSecond()
+    {
+        long now = System.nanoTime();
+        // Find the oldest sample within the window.
+        for(int i = Math.max(0, sampleCount - SAMPLES); i < sampleCount; i++) {
+            long time = sampleTimes[i % SAMPLES];
+            if(now - time <= RATE_WINDOW_NANOS && now > time) {
+                return (stepsCompleted - sampleSteps[i % SAMPLES]) * 1e9 / (now - time);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Make a handler for a control, which must be a POST request and
+     * is answered with a line of text.
+     * @param action The control, giving the reply.
+     * @return The handler.
+     */
+    private HttpHandler control(Control action)
+    {
+        return exchange -> {
+            if(!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "POST only\n");
+                return;
+            }
+            try {
+                respond(exchange, 200, action.apply(exchange) + "\n");
+            }
+            catch(IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage() + "\n");
+            }
+        };
+    }
+
+    /**
+     * Return a whole number parameter of a request's query.
+     * @param exchange The request.
+     * @param name The name of the parameter.
+     * @param defaultValue The value if the parameter is not given.
+     * @return The value of the parameter.
+     * @throws IllegalArgumentException If the value is not a whole number.
+     */
+    private static int getParameter(HttpExchange exchange, String name, int defaultValue)
+    {
+        String query = exchange.getRequestURI().getQuery();
+        if(query == null) {
+            return defaultValue;
+        }
+        for(String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if(equals > 0 && pair.substring(0, equals).equals(name)) {
+                try {
+                    return Integer.parseInt(pair.substring(equals + 1));
+                }
+                catch(NumberFormatException e) {
+                    throw new IllegalArgumentException(name + " must be a whole number");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Write the help and type lines of a metric.
+     * @param text The text to write to.
+     * @param name The metric's name.
+     * @param type The metric's type.
+     * @param help A description of the metric.
+     */
+    private static void metric(StringBuilder text, String name, String type, String help)
+    {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Send a reply and end the exchange.
+     * @param exchange The request.
+     * @param status The HTTP status.
+     * @param body The text of the reply.
+     * @throws IOException If the reply cannot be sent.
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if(!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A control, which acts on a request and gives a reply.
+     */
+    private interface Control
+    {
+        String apply(HttpExchange exchange);
+    }
+
+    /**
+     * The figures of the simulation at the end of a step.
+     */
+    private static class Snapshot
+    {
+        private final long stepsCompleted;
+        private final int step;
+        private final int actorCount;
+        private final int infected;
+        private final Map<String, Integer> populations;
+
+        /**
+         * Figures for before the first step is completed.
+         */
+        private Snapshot()
+        {
+            stepsCompleted = 0;
+            step = 0;
+            actorCount = 0;
+            infected = 0;
+            populations = new LinkedHashMap<>();
+        }
+
+        private Snapshot(Simulator simulator, long stepsCompleted)
+        {
+            this.stepsCompleted = stepsCompleted;
+            step = Simulator.getStep();
+            actorCount = simulator.getActorCount();
+            infected = Disease.getPlagueInt();
+            // The field's pyramid keeps each species' total up to date.
+            Field field = simulator.getField();
+            if(field.getPyramid() == null) {
+                field.setPyramidEnabled(true);
+            }
+            populations = new LinkedHashMap<>();
+            for(Class<?> species : Simulator.getSpeciesColors().keySet()) {
+                populations.put(species.getSimpleName(), field.getPyramid().getTotal(species));
+            }
+        }
+    }
+}
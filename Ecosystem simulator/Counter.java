@@ -50,6 +50,15 @@ public class Counter
         count++;
     }
     
+    /**
+     * Increment the current count by the given amount.
+     * @param amount The amount to add.
+     */
+    public void add(int amount)
+    {
+        count += amount;
+    }
+
     /**
      * Reset the current count to zero.
      */
@@ -0,0 +1,128 @@
+import java.util.function.Consumer;
+
+/**
+ * Checks that two ways of running the simulation give exactly the same
+ * results from the same seed, for example the reference step loop and
+ * the event-driven scheduler. The hash of the simulation state is
+ * compared step by step, and at the first step where the hashes differ
+ * the first position whose contents differ is found.
+ *
+ * The clock, the weather and the random number generator are shared by
+ * the whole simulation, so two simulations cannot be run side by side.
+ * Each engine is therefore run in turn from the same seed, step for
+ * step, and their traces are compared.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class DeterminismVerifier
+{
+    // The size of the field used by the main method.
+    private static final int DEPTH = 80;
+    private static final int WIDTH = 120;
+    // The number of steps compared by the main method.
+    private static final int STEPS = 500;
+
+    /**
+     * Compare the reference step loop against the other step modes.
+     */
+    public static void main(String[] args)
+    {
+        for(StepMode mode : StepMode.values()) {
+            String result = verify(DEPTH, WIDTH, STEPS,
+                simulator -> {}, simulator -> simulator.setStepMode(mode));
+            System.out.println(mode + ": " + result);
+        }
+    }
+
+    /**
+     * Run two engines from the same seed and compare them.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param steps The number of steps to compare.
+     * @param engineA Sets up the first engine on a new simulator.
+     * @param engineB Sets up the second engine on a new simulator.
+     * @return A description of the first difference, if any.
+     */
+    public static String verify(int depth, int width, int steps,
+                                Consumer<Simulator> engineA, Consumer<Simulator> engineB)
+    {
+        long[] traceA = trace(depth, width, steps, engineA);
+        long[] traceB = trace(depth, width, steps, engineB);
+        int step = 0;
+        while(step <= steps && traceA[step] == traceB[step]) {
+            step++;
+        }
+        if(step > steps) {
+            return "identical for " + steps + " steps";
+        }
+
+        long[] cellsA = cellHashes(depth, width, step, engineA);
+        long[] cellsB = cellHashes(depth, width, step, engineB);
+        for(int i = 0; i < cellsA.length; i++) {
+            if(cellsA[i] != cellsB[i]) {
+                return "diverged at step " + step + " in cell " + (i / width) + "," + (i % width);
+            }
+        }
+        return "diverged at step " + step + " in the clock, weather or an overwritten actor";
+    }
+
+    /**
+     * Run an engine from the default seed.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param engine Sets up the engine on the new simulator.
+     * @return The new simulator, at step zero.
+     */
+    private static Simulator start(int depth, int width, Consumer<Simulator> engine)
+    {
+        Randomizer.reset();
+        Simulator simulator = new Simulator(new Field(depth, width), false);
+        engine.accept(simulator);
+        return simulator;
+    }
+
+    /**
+     * Record the hash of the simulation state after each step.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param steps The number of steps to run.
+     * @param engine Sets up the engine on the new simulator.
+     * @return The hash at each step, starting from step zero.
+     */
+    private static long[] trace(int depth, int width, int steps, Consumer<Simulator> engine)
+    {
+        Simulator simulator = start(depth, width, engine);
+        long[] hashes = new long[steps + 1];
+        hashes[0] = simulator.getStateHash();
+        for(int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+            hashes[step] = simulator.getStateHash();
+        }
+        return hashes;
+    }
+
+    /**
+     * Record the hash of each position after running to a step.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param steps The number of steps to run.
+     * @param engine Sets up the engine on the new simulator.
+     * @return The hash of each position, row by row.
+     */
+    private static long[] cellHashes(int depth, int width, int steps, Consumer<Simulator> engine)
+    {
+        Simulator simulator = start(depth, width, engine);
+        for(int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+        }
+        Field field = simulator.getField();
+        long[] hashes = new long[depth * width];
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                hashes[row * width + col] = field.getCellHash(row, col);
+            }
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * A set of fields that spread out over the grid from their sources,
+ * such as the scent of prey. The fields are updated once per step by
+ * adding the sources and then blurring each channel with a small
+ * kernel, first along the rows and then along the columns, and then
+ * letting them decay. Repeated every step this spreads information far across the
+ * grid, so an animal can find distant food by moving up the gradient
+ * of a channel, looking only at its own neighbours.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class DiffusionField
+{
+    // The channel carrying the scent of prey, followed by predators.
+    public static final int PREY_SCENT = 0;
+    // The channel carrying the food value of plants, followed by prey.
+    public static final int PLANT_DENSITY = 1;
+    // The number of channels.
+    private static final int CHANNELS = 2;
+
+    // The fraction of each channel kept from one step to the next.
+    private static final float DECAY = 0.95f;
+    // The number of blur passes applied on each step.
+    private static final int PASSES = 2;
+
+    // The depth and width of the grid.
+    private int depth, width;
+    // The value of each channel, row by row.
+    private float[][] channels;
+    // Space for the intermediate result of each blur.
+    private float[] scratch;
+
+    /**
+     * Create empty channels for a grid of the given size.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public DiffusionField(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        channels = new float[CHANNELS][depth * width];
+        scratch = new float[depth * width];
+    }
+
+    /**
+     * Return the value of a channel at a location.
+     * @param channel The channel.
+     * @param location The location.
+     * @return The channel's value at the location.
+     */
+    public float getValue(int channel, Location location)
+    {
+        return channels[channel][location.getRow() * width + location.getCol()];
+    }
+
+    /**
+     * Update the channels for one step: add the scent of each prey and
+     * the food value of each plant in the field, then spread them.
+     * @param field The field holding the sources.
+     */
+    public void update(Field field)
+    {
+        float[] prey = channels[PREY_SCENT];
+        float[] plants = channels[PLANT_DENSITY];
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                Object being = field.getObjectAt(row, col);
+                if(being instanceof Prey) {
+                    prey[row * width + col] += 1;
+                }
+                else if(being instanceof Plant) {
+                    plants[row * width + col] += ((Plant) being).getFV();
+                }
+            }
+        }
+        for(float[] channel : channels) {
+            for(int pass = 0; pass < PASSES; pass++) {
+                blurRows(channel, scratch);
+                blurColumns(scratch, channel);
+            }
+            // Decay once per step, however many passes there are.
+            for(int i = 0; i < channel.length; i++) {
+                channel[i] *= DECAY;
+            }
+        }
+    }
+
+    /**
+     * Blur every row with the kernel (1/4, 1/2, 1/4).
+     * Values beyond the edges are taken to be those at the edges.
+     * @param from The values to blur.
+     * @param to The array to receive the result.
+     */
+    private void blurRows(float[] from, float[] to)
+    {
+        for(int row = 0; row < depth; row++) {
+            int start = row * width;
+            for(int col = 0; col < width; col++) {
+                float left = from[start + Math.max(col - 1, 0)];
+                float right = from[start + Math.min(col + 1, width - 1)];
+                to[start + col] = 0.25f * left + 0.5f * from[start + col] + 0.25f * right;
+            }
+        }
+    }
+
+    /**
+     * Blur every column with the kernel (1/4, 1/2, 1/4).
+     * Values beyond the edges are taken to be those at the edges.
+     * @param from The values to blur.
+     * @param to The array to receive the result.
+     */
+    private void blurColumns(float[] from, float[] to)
+    {
+        for(int row = 0; row < depth; row++) {
+            int above = Math.max(row - 1, 0) * width;
+            int here = row * width;
+            int below = Math.min(row + 1, depth - 1) * width;
+            for(int col = 0; col < width; col++) {
+                to[here + col] = 0.25f * from[above + col] + 0.5f * from[here + col] + 0.25f * from[below + col];
+            }
+        }
+    }
+}
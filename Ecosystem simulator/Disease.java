@@ -1,5 +1,4 @@
 import java.util.ArrayList;
-import java.util.Random;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -14,10 +13,10 @@ public class Disease
 {
     // A HashSet of all currently infected patients.
     private static HashSet<Animal> infectedPatients;
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The default probability that an animal will catch a disease.
+    private static final double DEFAULT_DISEASED_PROBABILITY = 0.001;
     // The probability that an animal will catch a disease.
-    private static final double DISEASED_PROBABILITY = 0.001;
+    private static double diseasedProbability = DEFAULT_DISEASED_PROBABILITY;
 
     /**
      * Constructor for objects of class Disease.
@@ -27,6 +26,21 @@ public class Disease
         infectedPatients = new HashSet<>();
     }
 
+    /**
+     * Sets the probability that an animal will catch a disease.
+     * @param probability The new probability.
+     */
+    public static void setDiseasedProbability(double probability) {
+        diseasedProbability = probability;
+    }
+
+    /**
+     * Restores the default probability of catching a disease.
+     */
+    public static void resetDiseasedProbability() {
+        diseasedProbability = DEFAULT_DISEASED_PROBABILITY;
+    }
+
     /**
      * Gets the count of currently infected patients.
      * @return the Integer of the count.
@@ -43,6 +57,24 @@ public class Disease
         infectedPatients.remove(animal);
     }
 
+    /**
+     * Checks whether an animal is counted as an infected patient.
+     * @param animal The animal.
+     * @return true if the animal is counted.
+     */
+    public static boolean isPatient(Animal animal){
+        return infectedPatients.contains(animal);
+    }
+
+    /**
+     * Counts an animal as an infected patient again, when restoring a
+     * saved state, without recording a new infection.
+     * @param animal The animal.
+     */
+    public static void restorePatient(Animal animal){
+        infectedPatients.add(animal);
+    }
+
     /**
      * Sets an animal diseased based on probability.
      * @param animal The animal that may be diseased.
@@ -50,8 +82,9 @@ public class Disease
      * the probability of disease.
      */
     public static boolean setDiseased(Animal animal){
-        if (rand.nextDouble()<= DISEASED_PROBABILITY) {
+        if (Randomizer.getRandom().nextDouble()<= diseasedProbability) {
             infectedPatients.add(animal);
+            recordInfection(animal, false);
             return true;
         }
         return false;
@@ -64,6 +97,22 @@ public class Disease
      */
     public static boolean giveDisease(Animal animal){
         infectedPatients.add(animal);
+        recordInfection(animal, true);
         return true;
     }
+
+    /**
+     * Records an infection for the flight recorder, if it is recording.
+     * @param animal The animal that has been infected.
+     * @param inherited Whether the disease was passed on at birth.
+     */
+    private static void recordInfection(Animal animal, boolean inherited){
+        InfectionEvent event = new InfectionEvent();
+        if (event.shouldCommit()) {
+            event.species = animal.getClass().getName();
+            event.inherited = inherited;
+            event.infectedCount = infectedPatients.size();
+            event.commit();
+        }
+    }
 }
@@ -0,0 +1,140 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A calendar of upcoming actor events, used to run the simulation
+ * in discrete-event mode. Instead of every actor acting on every
+ * step, each actor tells the scheduler the next step at which it has
+ * something meaningful to do (waking up, reaching breeding age,
+ * weather it can breed in) and is only touched again on that step.
+ * Ageing and death by old age need no events, as ages are derived
+ * from the current step and expiries are kept by an ExpiryIndex.
+ *
+ * The calendar is a timing wheel: one bucket of actors per step, for
+ * a fixed window of steps ahead of the current one. Events further
+ * ahead than the window are brought forward to its last bucket; the
+ * actor then simply reschedules itself when it is reached.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class EventScheduler
+{
+    // The number of steps covered by the wheel. Must be a power of two.
+    private static final int WHEEL_SIZE = 1024;
+
+    // One bucket of actors for each step in the window.
+    private List<List<Actor>> slots;
+    // The number of actors currently held in the wheel.
+    private int size;
+
+    /**
+     * Create an empty scheduler.
+     */
+    public EventScheduler()
+    {
+        slots = new ArrayList<>(WHEEL_SIZE);
+        for(int i = 0; i < WHEEL_SIZE; i++) {
+            slots.add(new ArrayList<>());
+        }
+        size = 0;
+    }
+
+    /**
+     * Remove all scheduled events.
+     */
+    public void clear()
+    {
+        for(List<Actor> slot : slots) {
+            slot.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Schedule an actor to act on the given step.
+     * @param actor The actor to be scheduled.
+     * @param step The current step.
+     * @param dueStep The step on which the actor should next act.
+     */
+    public void schedule(Actor actor, int step, int dueStep)
+    {
+        if(dueStep <= step) {
+            dueStep = step + 1;
+        }
+        else if(dueStep > step + WHEEL_SIZE - 1) {
+            dueStep = step + WHEEL_SIZE - 1;
+        }
+        slots.get(dueStep & (WHEEL_SIZE - 1)).add(actor);
+        size++;
+    }
+
+    /**
+     * Schedule every actor in the list to act on the next step.
+     * @param actors The actors to be scheduled.
+     * @param step The current step.
+     */
+    public void scheduleAll(List<Actor> actors, int step)
+    {
+        for(Actor actor : actors) {
+            schedule(actor, step, step + 1);
+        }
+    }
+
+    /**
+     * Let every actor with an event due on this step act, and
+     * schedule its next event. Newly born actors are scheduled to
+     * act on the following step.
+     * @param step The current step.
+     * @param newActors A list to receive newly born actors.
+     * @param timer The timer through which the actors act.
+     */
+    public void runStep(int step, List<Actor> newActors, ActTimer timer)
+    {
+        int index = step & (WHEEL_SIZE - 1);
+        List<Actor> due = slots.get(index);
+        // Events due now are never added to the current bucket, so it
+        // can be swapped out and processed while others are filled.
+        slots.set(index, new ArrayList<>());
+        size -= due.size();
+        for(Actor actor : due) {
+            if(actor.isAlive()) {
+                timer.act(actor, newActors, 1);
+            }
+            if(actor.isAlive()) {
+                schedule(actor, step, actor.getNextEventStep(step));
+            }
+        }
+        for(Actor actor : newActors) {
+            schedule(actor, step, step + 1);
+        }
+    }
+
+    /**
+     * Remove all living actors from the scheduler.
+     * @param step The current step.
+     * @return The living actors, in the order of their next events.
+     */
+    public List<Actor> drain(int step)
+    {
+        List<Actor> live = new ArrayList<>(size);
+        for(int i = 1; i < WHEEL_SIZE; i++) {
+            for(Actor actor : slots.get((step + i) & (WHEEL_SIZE - 1))) {
+                if(actor.isAlive()) {
+                    live.add(actor);
+                }
+            }
+        }
+        clear();
+        return live;
+    }
+
+    /**
+     * @return The number of scheduled events, including those of
+     * actors that have died since being scheduled.
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of actors by the step on which they die of old age.
+ * Since actors' ages are derived from the current step, nothing
+ * needs to change on an actor from one step to the next; instead,
+ * the simulator asks the index for the actors expiring on each step.
+ *
+ * Like the EventScheduler, the index is a timing wheel with one
+ * bucket per step. Expiries further ahead than the wheel are kept
+ * in its last bucket and re-indexed when that bucket is reached.
+ * Actors whose expiry is brought forward (by illness) check their
+ * own age, so entries only ever need to be checked when popped.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class ExpiryIndex
+{
+    // The number of steps covered by the wheel. Must be a power of two.
+    private static final int WHEEL_SIZE = 1024;
+
+    // One bucket of actors for each step in the window.
+    private List<List<Actor>> slots;
+
+    /**
+     * Create an empty index.
+     */
+    public ExpiryIndex()
+    {
+        slots = new ArrayList<>(WHEEL_SIZE);
+        for(int i = 0; i < WHEEL_SIZE; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Remove all actors from the index.
+     */
+    public void clear()
+    {
+        for(List<Actor> slot : slots) {
+            slot.clear();
+        }
+    }
+
+    /**
+     * Add an actor to the index. Actors that never die of old age
+     * are not indexed.
+     * @param actor The actor to be indexed.
+     * @param step The current step.
+     */
+    public void add(Actor actor, int step)
+    {
+        int expiryStep = actor.getExpiryStep();
+        if(expiryStep == Integer.MAX_VALUE) {
+            return;
+        }
+        if(expiryStep <= step) {
+            expiryStep = step + 1;
+        }
+        else if(expiryStep > step + WHEEL_SIZE - 1) {
+            expiryStep = step + WHEEL_SIZE - 1;
+        }
+        slots.get(expiryStep & (WHEEL_SIZE - 1)).add(actor);
+    }
+
+    /**
+     * Add an actor to the bucket of a given step, whatever its expiry
+     * step, as when restoring a saved index.
+     * @param actor The actor to be indexed.
+     * @param step The step whose bucket it goes in, within the wheel
+     * ahead of the current step.
+     */
+    public void addAt(Actor actor, int step)
+    {
+        slots.get(step & (WHEEL_SIZE - 1)).add(actor);
+    }
+
+    /**
+     * Get the actors in the bucket of a given step.
+     * @param step A step within the wheel ahead of the current step.
+     * @return The actors, some of which may since have died.
+     */
+    public List<Actor> getBucket(int step)
+    {
+        return Collections.unmodifiableList(slots.get(step & (WHEEL_SIZE - 1)));
+    }
+
+    /**
+     * @return The number of steps ahead covered by the index.
+     */
+    public int getWheelSize()
+    {
+        return WHEEL_SIZE;
+    }
+
+    /**
+     * Add every actor in the list to the index.
+     * @param actors The actors to be indexed.
+     * @param step The current step.
+     */
+    public void addAll(List<Actor> actors, int step)
+    {
+        for(Actor actor : actors) {
+            add(actor, step);
+        }
+    }
+
+    /**
+     * Kill every living actor that dies of old age on this step.
+     * @param step The current step.
+     */
+    public void expire(int step)
+    {
+        int index = step & (WHEEL_SIZE - 1);
+        List<Actor> due = slots.get(index);
+        slots.set(index, new ArrayList<>());
+        for(Actor actor : due) {
+            if(actor.isAlive()) {
+                if(actor.getExpiryStep() <= step) {
+                    actor.setDead(BehaviourCounters.DEATH_OLD_AGE);
+                }
+                else {
+                    add(actor, step);
+                }
+            }
+        }
+    }
+}
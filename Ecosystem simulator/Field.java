@@ -1,25 +1,69 @@
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.stream.IntStream;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
  * 
+ * The positions are stored in square tiles, and within each tile in
+ * Morton (Z-curve) order, so that positions which are close together
+ * on the grid are also close together in memory. Neighbourhood
+ * searches then touch a few cache lines rather than several rows.
+ * 
+ * For each tile the field also keeps a count of the prey, predators,
+ * plants and free positions in it, so that searches can skip tiles
+ * which cannot contain what they are looking for.
+ * 
+ * The field also keeps a Zobrist-style hash of its contents: each
+ * occupant of each position, and the state of each actor, adds a
+ * pseudo-random key to the hash by exclusive-or. The keys are added
+ * and removed as the field changes, so two fields with the same
+ * contents have the same hash however they got there.
+ * 
  * @author David J. Barnes, Michael Kölling, Amman Kiani and Aarjav Jain
  * @version 2021.02.24
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // The number of bits in a tile's side; tiles are 8x8 positions.
+    private static final int TILE_BITS = 3;
+    // The mask selecting a position within a tile.
+    private static final int TILE_MASK = (1 << TILE_BITS) - 1;
+    // The bits of each in-tile coordinate spread out to even bits.
+    private static final int[] SPREAD = {0, 1, 4, 5, 16, 17, 20, 21};
+
+    // The kinds of occupant counted for each tile.
+    public static final int PREY = 0;
+    public static final int PREDATOR = 1;
+    public static final int PLANT = 2;
+    public static final int FREE = 3;
+    // The number of counts kept per tile: one per kind of occupant,
+    // plus the number of occupied positions from which FREE is found.
+    private static final int COUNTS_PER_TILE = 4;
+    private static final int OCCUPIED = 3;
 
     // The depth and width of the field.
     private int depth, width;
-    // Storage for the animals.
-    private Object[][] field;
+    // The number of tiles across the field.
+    private int tilesWide;
+    // Storage for the animals, tile by tile in Morton order.
+    private Object[] field;
+    // The counts of each kind of occupant, tile by tile.
+    private int[] tileCounts;
+    // The counts of each species by rectangle, if kept.
+    private PopulationIndex populationIndex;
+    // The counts of each species by block at several scales, if kept.
+    private FieldPyramid pyramid;
+    // The hash of the contents of the field.
+    private long hash;
+    // The scent and food channels spread over the field, if any.
+    private DiffusionField diffusion;
+    // Whether the field is being bulk loaded, see beginBulkLoad.
+    private boolean bulkLoading;
 
     /**
      * Represent a field of the given dimensions.
@@ -27,10 +71,62 @@ public class Field
      * @param width The width of the field.
      */
     public Field(int depth, int width)
+    {
+        this(depth, width, true);
+    }
+
+    /**
+     * Represent a field of the given dimensions, whose positions may
+     * be stored elsewhere by a subclass.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param onHeap Whether the positions are stored in this object.
+     */
+    protected Field(int depth, int width, boolean onHeap)
     {
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        tilesWide = (width + TILE_MASK) >> TILE_BITS;
+        tileCounts = new int[(getCapacity() >> (2 * TILE_BITS)) * COUNTS_PER_TILE];
+        if(onHeap) {
+            field = new Object[getCapacity()];
+        }
+    }
+
+    /**
+     * Return the number of storage positions needed for the field,
+     * which is its size rounded up to whole tiles.
+     * @return The number of storage positions.
+     */
+    protected int getCapacity()
+    {
+        int tilesDeep = (depth + TILE_MASK) >> TILE_BITS;
+        return (tilesWide * tilesDeep) << (2 * TILE_BITS);
+    }
+
+    /**
+     * Return the position in storage of a location in the field.
+     * Positions in the same tile are adjacent in storage, and tiles
+     * are laid out row by row, so sorting locations by this index
+     * visits the field in a cache-friendly order.
+     * @param row The row of the location.
+     * @param col The column of the location.
+     * @return The storage index of the location.
+     */
+    public int cellIndex(int row, int col)
+    {
+        int tile = (row >> TILE_BITS) * tilesWide + (col >> TILE_BITS);
+        return (tile << (2 * TILE_BITS)) | (SPREAD[row & TILE_MASK] << 1) | SPREAD[col & TILE_MASK];
+    }
+
+    /**
+     * Return the position in storage of a location in the field.
+     * @param location The location.
+     * @return The storage index of the location.
+     */
+    public int cellIndex(Location location)
+    {
+        return cellIndex(location.getRow(), location.getCol());
     }
 
     /**
@@ -38,11 +134,8 @@ public class Field
      */
     public void clear()
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
-            }
-        }
+        Arrays.fill(field, null);
+        clearSummaries();
     }
 
     /**
@@ -51,7 +144,12 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        int cell = cellIndex(location);
+        Object occupant = field[cell];
+        field[cell] = null;
+        if(occupant != null) {
+            occupantChanged(location.getRow(), location.getCol(), occupant, null);
+        }
     }
 
     /**
@@ -76,7 +174,372 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        int cell = cellIndex(location);
+        Object occupant = field[cell];
+        field[cell] = animal;
+        occupantChanged(location.getRow(), location.getCol(), occupant, animal);
+    }
+
+    /**
+     * Update the summaries of the field after the occupant of a
+     * location has changed.
+     * @param row The row of the location.
+     * @param col The column of the location.
+     * @param oldOccupant The previous occupant, or null if there was none.
+     * @param newOccupant The new occupant, or null if there is none.
+     */
+    protected void occupantChanged(int row, int col, Object oldOccupant, Object newOccupant)
+    {
+        int tile = ((row >> TILE_BITS) * tilesWide + (col >> TILE_BITS)) * COUNTS_PER_TILE;
+        updateTileCounts(tile, oldOccupant, -1);
+        updateTileCounts(tile, newOccupant, 1);
+        if(bulkLoading) {
+            // Only the counts of the tile are kept while bulk loading.
+            return;
+        }
+        int cell = cellIndex(row, col);
+        if(oldOccupant != null) {
+            hash ^= cellKey(cell, oldOccupant);
+        }
+        if(newOccupant != null) {
+            hash ^= cellKey(cell, newOccupant);
+        }
+        if(populationIndex != null) {
+            if(oldOccupant != null) {
+                populationIndex.update(oldOccupant.getClass(), row, col, -1);
+            }
+            if(newOccupant != null) {
+                populationIndex.update(newOccupant.getClass(), row, col, 1);
+            }
+        }
+        if(pyramid != null) {
+            if(oldOccupant != null) {
+                pyramid.update(oldOccupant.getClass(), row, col, -1);
+            }
+            if(newOccupant != null) {
+                pyramid.update(newOccupant.getClass(), row, col, 1);
+            }
+        }
+    }
+
+    /**
+     * Add an occupant to, or remove one from, the counts of a tile.
+     * @param tile The offset of the tile's counts.
+     * @param occupant The occupant, or null if there is none.
+     * @param delta 1 to add the occupant, -1 to remove it.
+     */
+    private void updateTileCounts(int tile, Object occupant, int delta)
+    {
+        if(occupant != null) {
+            tileCounts[tile + OCCUPIED] += delta;
+            int kind = kindOf(occupant);
+            if(kind >= 0) {
+                tileCounts[tile + kind] += delta;
+            }
+        }
+    }
+
+    /**
+     * Start loading the field in bulk. Until endBulkLoad is called,
+     * different tiles may be filled by different threads at once, so
+     * only the counts of each tile are kept; the hash and the
+     * population index are rebuilt at the end.
+     */
+    public void beginBulkLoad()
+    {
+        bulkLoading = true;
+    }
+
+    /**
+     * Finish loading the field in bulk, rebuilding the hash, the
+     * population index and the pyramid from its contents.
+     */
+    public void endBulkLoad()
+    {
+        bulkLoading = false;
+        hash = IntStream.range(0, depth).parallel()
+            .mapToLong(row -> {
+                long rowHash = 0;
+                for(int col = 0; col < width; col++) {
+                    rowHash ^= getCellHash(row, col);
+                }
+                return rowHash;
+            })
+            .reduce(0, (a, b) -> a ^ b);
+        if(populationIndex != null) {
+            setPopulationIndexEnabled(false);
+            setPopulationIndexEnabled(true);
+        }
+        if(pyramid != null) {
+            setPyramidEnabled(false);
+            setPyramidEnabled(true);
+        }
+    }
+
+    /**
+     * Return whether different tiles of the field may be filled by
+     * different threads at once while bulk loading.
+     * @return true if tiles may be filled in parallel.
+     */
+    public boolean isTileParallel()
+    {
+        return true;
+    }
+
+    /**
+     * @return The number of tiles across the field.
+     */
+    public int getTilesWide()
+    {
+        return tilesWide;
+    }
+
+    /**
+     * @return The number of tiles down the field.
+     */
+    public int getTilesDeep()
+    {
+        return (depth + TILE_MASK) >> TILE_BITS;
+    }
+
+    /**
+     * @return The number of positions along each side of a tile.
+     */
+    public static int getTileSize()
+    {
+        return 1 << TILE_BITS;
+    }
+
+    /**
+     * Reset the summaries of the field for an empty field.
+     */
+    protected void clearSummaries()
+    {
+        Arrays.fill(tileCounts, 0);
+        hash = 0;
+        if(populationIndex != null) {
+            populationIndex.clear();
+        }
+        if(pyramid != null) {
+            pyramid.clear();
+        }
+    }
+
+    /**
+     * Start or stop keeping counts of each species by rectangle.
+     * The counts are built from the current contents of the field.
+     * @param enabled true to keep the counts.
+     */
+    public void setPopulationIndexEnabled(boolean enabled)
+    {
+        if(!enabled) {
+            populationIndex = null;
+        }
+        else if(populationIndex == null) {
+            populationIndex = new PopulationIndex(depth, width);
+            for(int row = 0; row < depth; row++) {
+                for(int col = 0; col < width; col++) {
+                    Object occupant = getObjectAt(row, col);
+                    if(occupant != null) {
+                        populationIndex.update(occupant.getClass(), row, col, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Start or stop keeping counts of each species by block, at
+     * several scales, for drawing the field zoomed out. The counts are
+     * built from the current contents of the field.
+     * @param enabled true to keep the counts.
+     */
+    public void setPyramidEnabled(boolean enabled)
+    {
+        if(!enabled) {
+            pyramid = null;
+        }
+        else if(pyramid == null) {
+            pyramid = new FieldPyramid(depth, width);
+            for(int row = 0; row < depth; row++) {
+                for(int col = 0; col < width; col++) {
+                    Object occupant = getObjectAt(row, col);
+                    if(occupant != null) {
+                        pyramid.update(occupant.getClass(), row, col, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The counts of each species by block, or null if they
+     * are not kept.
+     */
+    public FieldPyramid getPyramid()
+    {
+        return pyramid;
+    }
+
+    /**
+     * Count the members of a species in a rectangle of the field.
+     * The counts are kept by a population index, which is started
+     * the first time it is needed.
+     * @param species The species' class.
+     * @param top The first row of the rectangle.
+     * @param left The first column of the rectangle.
+     * @param bottom The last row of the rectangle.
+     * @param right The last column of the rectangle.
+     * @return The number of members of the species in the rectangle.
+     */
+    public int countInRegion(Class<?> species, int top, int left, int bottom, int right)
+    {
+        setPopulationIndexEnabled(true);
+        return populationIndex.count(species, top, left, bottom, right);
+    }
+
+    /**
+     * Return the hash of the contents of the field.
+     * @return The hash.
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Add a key to, or remove a key from, the hash of the field.
+     * Actors use this to fold their state into the hash.
+     * @param key The key.
+     */
+    public void toggleHash(long key)
+    {
+        if(!bulkLoading) {
+            hash ^= key;
+        }
+    }
+
+    /**
+     * Return the part of the hash of the field that comes from one
+     * position: its occupant and, for an actor, the actor's state.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The hash of the position.
+     */
+    public long getCellHash(int row, int col)
+    {
+        Object occupant = getObjectAt(row, col);
+        if(occupant == null) {
+            return 0;
+        }
+        long cellHash = cellKey(cellIndex(row, col), occupant);
+        if(occupant instanceof Actor) {
+            cellHash ^= ((Actor) occupant).getHashContribution();
+        }
+        return cellHash;
+    }
+
+    /**
+     * Scramble the bits of a value, so that similar values give
+     * unrelated results. This is the finaliser of SplitMix64.
+     * @param value The value to scramble.
+     * @return The scrambled value.
+     */
+    public static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Return the key of an occupant at a position. Keys are computed
+     * rather than stored, so that huge fields need no table of keys.
+     * @param cell The storage index of the position.
+     * @param occupant The occupant.
+     * @return The key.
+     */
+    private static long cellKey(int cell, Object occupant)
+    {
+        return mix(((long) cell << 32) ^ occupant.getClass().getName().hashCode());
+    }
+
+    /**
+     * Return the kind of an occupant of the field.
+     * @param occupant The occupant.
+     * @return PREY, PREDATOR or PLANT, or -1 for anything else.
+     */
+    private static int kindOf(Object occupant)
+    {
+        if(occupant instanceof Prey) {
+            return PREY;
+        }
+        else if(occupant instanceof Predator) {
+            return PREDATOR;
+        }
+        else if(occupant instanceof Plant) {
+            return PLANT;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of occupants of a kind in a tile.
+     * @param tileRow The row of the tile.
+     * @param tileCol The column of the tile.
+     * @param kind PREY, PREDATOR, PLANT or FREE.
+     * @return The number of occupants of that kind, or of free
+     * positions, in the tile.
+     */
+    public int getTileCount(int tileRow, int tileCol, int kind)
+    {
+        int tile = (tileRow * tilesWide + tileCol) * COUNTS_PER_TILE;
+        if(kind == FREE) {
+            int rows = Math.min(1 << TILE_BITS, depth - (tileRow << TILE_BITS));
+            int cols = Math.min(1 << TILE_BITS, width - (tileCol << TILE_BITS));
+            return rows * cols - tileCounts[tile + OCCUPIED];
+        }
+        return tileCounts[tile + kind];
+    }
+
+    /**
+     * Determine from the tile counts whether the area around a
+     * location might hold anything of a kind. If this returns false
+     * there is certainly nothing of that kind in the area, and a
+     * search of the area can be skipped.
+     * @param location The centre of the area.
+     * @param rowRadius The number of rows either side of the centre.
+     * @param colRadius The number of columns either side of the centre.
+     * @param kind PREY, PREDATOR, PLANT or FREE.
+     * @return true if a tile overlapping the area holds that kind.
+     */
+    public boolean mayContain(Location location, int rowRadius, int colRadius, int kind)
+    {
+        return countUpperBound(location, rowRadius, colRadius, kind) > 0;
+    }
+
+    /**
+     * Return, from the tile counts, an upper bound on the number of
+     * occupants of a kind in the area around a location.
+     * @param location The centre of the area.
+     * @param rowRadius The number of rows either side of the centre.
+     * @param colRadius The number of columns either side of the centre.
+     * @param kind PREY, PREDATOR, PLANT or FREE.
+     * @return The total of that kind in the tiles overlapping the area.
+     */
+    public int countUpperBound(Location location, int rowRadius, int colRadius, int kind)
+    {
+        int firstRow = Math.max(location.getRow() - rowRadius, 0) >> TILE_BITS;
+        int lastRow = Math.min(location.getRow() + rowRadius, depth - 1) >> TILE_BITS;
+        int firstCol = Math.max(location.getCol() - colRadius, 0) >> TILE_BITS;
+        int lastCol = Math.min(location.getCol() + colRadius, width - 1) >> TILE_BITS;
+        int count = 0;
+        for(int tileRow = firstRow; tileRow <= lastRow; tileRow++) {
+            for(int tileCol = firstCol; tileCol <= lastCol; tileCol++) {
+                count += getTileCount(tileRow, tileCol, kind);
+            }
+        }
+        return count;
     }
 
     /**
@@ -97,7 +560,7 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return field[cellIndex(row, col)];
     }
 
     /**
@@ -185,12 +648,78 @@ public class Field
 
             // Shuffle the list. Several other methods rely on the list
             // being in a random order.
-            Collections.shuffle(locations, rand);
+            Collections.shuffle(locations, Randomizer.getRandom());
         }
 
         return locations;
     }
 
+    /**
+     * Draw the random numbers that adjacentLocations would draw to
+     * shuffle its list, without making the list. Searches that are
+     * skipped call this, so that a seeded run takes the same course
+     * whether or not they are skipped.
+     * @param location The location at the centre.
+     * @param newRValue The distance searched along the rows.
+     * @param newCValue The distance searched along the columns.
+     */
+    public void skipAdjacentLocations(Location location, int newRValue, int newCValue)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        int rows = Math.min(row + Math.abs(newRValue), depth - 1) - Math.max(row - Math.abs(newRValue), 0) + 1;
+        int cols = Math.min(col + Math.abs(newCValue), width - 1) - Math.max(col - Math.abs(newCValue), 0) + 1;
+        // Collections.shuffle draws once for each position but the first,
+        // and the location itself is not in the list.
+        for(int i = rows * cols - 1; i > 1; i--) {
+            Randomizer.getRandom().nextInt(i);
+        }
+    }
+
+    /**
+     * Attach scent and food channels to the field, for animals to follow.
+     * @param diffusion The channels, or null to remove them.
+     */
+    public void setDiffusion(DiffusionField diffusion)
+    {
+        this.diffusion = diffusion;
+    }
+
+    /**
+     * Return the scent and food channels spread over the field.
+     * @return The channels, or null if there are none.
+     */
+    public DiffusionField getDiffusion()
+    {
+        return diffusion;
+    }
+
+    /**
+     * Find the free adjacent location with the highest value of a
+     * diffusion channel. Without diffusion channels this is the same
+     * as freeAdjacentLocation.
+     * @param location The location from which to move.
+     * @param channel The channel to follow.
+     * @return A free adjacent location, or null if there is none.
+     */
+    public Location uphillAdjacentLocation(Location location, int channel)
+    {
+        if(diffusion == null) {
+            return freeAdjacentLocation(location);
+        }
+        Location best = null;
+        float bestValue = 0;
+        // The list is shuffled, so ties are broken at random.
+        for(Location next : getFreeAdjacentLocations(location)) {
+            float value = diffusion.getValue(channel, next);
+            if(best == null || value > bestValue) {
+                best = next;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
     /**
      * Return the depth of the field.
      * @return The depth of the field.
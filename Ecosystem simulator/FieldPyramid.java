@@ -0,0 +1,138 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts of each species over square blocks of a field, at a series
+ * of block sizes, so that a zoomed-out picture of the field can be
+ * drawn from a few counts per pixel instead of from every position.
+ *
+ * Level n counts blocks of 2^n by 2^n positions. The finest level
+ * kept is that of the field's tiles, and the coarsest is a single
+ * block covering the whole field, which holds each species' total.
+ * The field keeps the counts up to date as actors are placed and
+ * cleared, adding to one block at each level.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class FieldPyramid
+{
+    // The finest level kept: blocks the size of a tile.
+    public static final int MIN_LEVEL = Integer.numberOfTrailingZeros(Field.getTileSize());
+
+    // The depth and width of the field.
+    private int depth, width;
+    // The coarsest level, with a single block.
+    private int maxLevel;
+    // For each species found so far, the counts for each level,
+    // block by block, row by row.
+    private Map<Class<?>, int[][]> counts;
+
+    /**
+     * Create an empty pyramid for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public FieldPyramid(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        maxLevel = MIN_LEVEL;
+        while((depth - 1) >> maxLevel > 0 || (width - 1) >> maxLevel > 0) {
+            maxLevel++;
+        }
+        counts = new LinkedHashMap<>();
+    }
+
+    /**
+     * Remove all counts from the pyramid.
+     */
+    public void clear()
+    {
+        counts.clear();
+    }
+
+    /**
+     * Add to the count of a species at a position.
+     * @param species The species' class.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @param delta The amount to add to the count.
+     */
+    public void update(Class<?> species, int row, int col, int delta)
+    {
+        int[][] levels = counts.get(species);
+        if(levels == null) {
+            levels = new int[maxLevel + 1][];
+            for(int level = MIN_LEVEL; level <= maxLevel; level++) {
+                levels[level] = new int[getBlocksDeep(level) * getBlocksWide(level)];
+            }
+            counts.put(species, levels);
+        }
+        for(int level = MIN_LEVEL; level <= maxLevel; level++) {
+            levels[level][(row >> level) * getBlocksWide(level) + (col >> level)] += delta;
+        }
+    }
+
+    /**
+     * Return the number of members of a species in a block.
+     * @param species The species' class.
+     * @param level The level, from MIN_LEVEL to getMaxLevel().
+     * @param blockRow The row of the block.
+     * @param blockCol The column of the block.
+     * @return The number of members of the species in the block.
+     */
+    public int getCount(Class<?> species, int level, int blockRow, int blockCol)
+    {
+        int[][] levels = counts.get(species);
+        if(levels == null) {
+            return 0;
+        }
+        return levels[level][blockRow * getBlocksWide(level) + blockCol];
+    }
+
+    /**
+     * Return the number of members of a species in the whole field.
+     * @param species The species' class.
+     * @return The species' population.
+     */
+    public int getTotal(Class<?> species)
+    {
+        return getCount(species, maxLevel, 0, 0);
+    }
+
+    /**
+     * @return The species found in the field so far.
+     */
+    public Set<Class<?>> getSpecies()
+    {
+        return counts.keySet();
+    }
+
+    /**
+     * @return The coarsest level, which has a single block.
+     */
+    public int getMaxLevel()
+    {
+        return maxLevel;
+    }
+
+    /**
+     * @param level A level.
+     * @return The number of rows of blocks at the level.
+     */
+    public int getBlocksDeep(int level)
+    {
+        return ((depth - 1) >> level) + 1;
+    }
+
+    /**
+     * @param level A level.
+     * @return The number of columns of blocks at the level.
+     */
+    public int getBlocksWide(int level)
+    {
+        return ((width - 1) >> level) + 1;
+    }
+}
@@ -91,6 +91,16 @@ public class FieldStats
      * @param animalClass The class of animal to increment.
      */
     public void incrementCount(Class animalClass)
+    {
+        incrementCount(animalClass, 1);
+    }
+
+    /**
+     * Add to the count for one class of animal.
+     * @param animalClass The class of animal to increment.
+     * @param amount The amount to add.
+     */
+    public void incrementCount(Class<?> animalClass, int amount)
     {
         Counter count = counters.get(animalClass);
         if(count == null) {
@@ -99,7 +109,7 @@ public class FieldStats
             count = new Counter(animalClass.getName());
             counters.put(animalClass, count);
         }
-        count.increment();
+        count.add(amount);
     }
 
     /**
@@ -141,6 +151,15 @@ public class FieldStats
     private void generateCounts(Field field)
     {
         reset();
+        FieldPyramid pyramid = field.getPyramid();
+        if(pyramid != null) {
+            // The totals are already kept by the field.
+            for(Class<?> species : pyramid.getSpecies()) {
+                incrementCount(species, pyramid.getTotal(species));
+            }
+            countsValid = true;
+            return;
+        }
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
                 Object animal = field.getObjectAt(row, col);
@@ -0,0 +1,334 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Records the steps of a run as image frames, either as a numbered
+ * sequence of PNG files or as one animated GIF, without slowing the
+ * simulation down to the speed of the encoder.
+ *
+ * At the end of a step the field is copied, as one byte per position,
+ * into a buffer taken from a fixed pool, and the buffer is handed to a
+ * background thread which encodes it and returns it to the pool. When
+ * the encoder falls behind and the pool is empty, the frame is either
+ * dropped or the simulation waits for a buffer, as chosen when the
+ * exporter is created.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class FrameExporter implements AutoCloseable
+{
+    /**
+     * The format in which frames are written.
+     */
+    public enum Format
+    {
+        // One PNG file per frame, in a directory.
+        PNG_SEQUENCE,
+        // A single animated GIF file.
+        GIF
+    }
+
+    // The frame that tells the encoder there are no more.
+    private static final Frame END = new Frame(-1, null);
+
+    // The depth and width of the field.
+    private int depth, width;
+    // The format of the frames.
+    private Format format;
+    // The directory or file written to.
+    private Path output;
+    // Whether to drop frames, rather than wait, when the encoder falls behind.
+    private boolean dropWhenBehind;
+    // The number of hundredths of a second between GIF frames.
+    private int frameDelay;
+    // The code and colour of each species.
+    private SpeciesPalette palette;
+    private IndexColorModel colorModel;
+    // The buffers free to hold frames.
+    private BlockingQueue<byte[]> freeBuffers;
+    // The frames waiting to be encoded.
+    private BlockingQueue<Frame> frames;
+    // The thread encoding the frames.
+    private Thread encoder;
+    // The number of frames written and dropped.
+    private volatile int written;
+    private volatile int dropped;
+    // The first error met by the encoder, if any.
+    private volatile IOException error;
+
+    /**
+     * Create an exporter and start its encoder.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param format The format of the frames.
+     * @param output The directory for a PNG sequence, or the GIF file.
+     * @param buffers The number of frames that may wait to be encoded.
+     * @param dropWhenBehind true to drop frames when all the buffers
+     * are waiting, false to wait for a buffer to be free.
+     * @throws IOException If the output cannot be created.
+     */
+    public FrameExporter(int depth, int width, Format format, Path output,
+                         int buffers, boolean dropWhenBehind) throws IOException
+    {
+        this.depth = depth;
+        this.width = width;
+        this.format = format;
+        this.output = output;
+        this.dropWhenBehind = dropWhenBehind;
+        frameDelay = 10;
+        palette = new SpeciesPalette();
+        colorModel = palette.getColorModel();
+        freeBuffers = new ArrayBlockingQueue<>(buffers);
+        for(int i = 0; i < buffers; i++) {
+            freeBuffers.add(new byte[depth * width]);
+        }
+        // Every buffer may be waiting, plus the end frame.
+        frames = new ArrayBlockingQueue<>(buffers + 1);
+        if(format == Format.PNG_SEQUENCE) {
+            Files.createDirectories(output);
+        }
+        ImageOutputStream gifStream = format == Format.GIF ? ImageIO.createImageOutputStream(output.toFile()) : null;
+        encoder = new Thread(() -> encodeFrames(gifStream), "frame-exporter");
+        encoder.setDaemon(true);
+        encoder.start();
+    }
+
+    /**
+     * Set the time between frames of a GIF.
+     * @param hundredths The delay in hundredths of a second.
+     */
+    public void setFrameDelay(int hundredths)
+    {
+        frameDelay = hundredths;
+    }
+
+    /**
+     * Copy the field as the frame for a step, and queue it to be
+     * encoded. If no buffer is free the frame is dropped or this waits,
+     * depending on the exporter's policy.
+     * @param field The field.
+     * @param step The step.
+     */
+    public void capture(Field field, int step)
+    {
+        byte[] buffer = freeBuffers.poll();
+        if(buffer == null) {
+            if(dropWhenBehind) {
+                dropped++;
+                return;
+            }
+            try {
+                buffer = freeBuffers.take();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped++;
+                return;
+            }
+        }
+        palette.capture(field, buffer);
+        // There is always room, as there are no more frames than buffers.
+        frames.add(new Frame(step, buffer));
+    }
+
+    /**
+     * @return The number of frames written so far.
+     */
+    public int getWrittenCount()
+    {
+        return written;
+    }
+
+    /**
+     * @return The number of frames dropped because the encoder was behind.
+     */
+    public int getDroppedCount()
+    {
+        return dropped;
+    }
+
+    /**
+     * Encode the frames still waiting, and finish the output.
+     * @throws IOException If a frame could not be written.
+     */
+    public void close() throws IOException
+    {
+        frames.add(END);
+        try {
+            encoder.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Encode frames until the end frame is reached.
+     * @param gifStream The stream of a GIF, or null for a PNG sequence.
+     */
+    private void encodeFrames(ImageOutputStream gifStream)
+    {
+        ImageWriter gifWriter = null;
+        try {
+            if(gifStream != null) {
+                gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+                gifWriter.setOutput(gifStream);
+                gifWriter.prepareWriteSequence(null);
+            }
+            while(true) {
+                Frame frame = frames.take();
+                if(frame == END) {
+                    break;
+                }
+                try {
+                    write(frame, gifWriter);
+                    written++;
+                }
+                finally {
+                    freeBuffers.add(frame.codes);
+                }
+            }
+            if(gifWriter != null) {
+                gifWriter.endWriteSequence();
+            }
+        }
+        catch(IOException e) {
+            error = e;
+            // Keep taking frames, so that the simulation is not held up.
+            drainAfterError();
+        }
+        catch(RuntimeException e) {
+            // ImageIO reports some failures, such as a frame too large
+            // for a GIF, unchecked; they must not end the thread silently.
+            error = new IOException("Cannot encode a frame", e);
+            drainAfterError();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            if(gifWriter != null) {
+                gifWriter.dispose();
+            }
+            if(gifStream != null) {
+                try {
+                    gifStream.close();
+                }
+                catch(IOException e) {
+                    if(error == null) {
+                        error = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one frame.
+     * @param frame The frame.
+     * @param gifWriter The writer of the GIF, or null for a PNG sequence.
+     * @throws IOException If the frame cannot be written.
+     */
+    private void write(Frame frame, ImageWriter gifWriter) throws IOException
+    {
+        // The image uses the buffer itself, with the codes as colour indices.
+        WritableRaster raster = Raster.createInterleavedRaster(
+            new DataBufferByte(frame.codes, frame.codes.length), width, depth, width, 1, new int[] {0}, null);
+        BufferedImage image = new BufferedImage(colorModel, raster, false, null);
+        if(gifWriter == null) {
+            Path file = output.resolve(String.format("frame-%06d.png", frame.step));
+            ImageIO.write(image, "png", file.toFile());
+        }
+        else {
+            gifWriter.writeToSequence(new IIOImage(image, null, gifMetadata(gifWriter, image)), null);
+        }
+    }
+
+    /**
+     * Make the metadata of a GIF frame, giving the delay before the
+     * next frame and, for the first frame, that the animation loops.
+     * @param writer The GIF writer.
+     * @param image The frame.
+     * @return The metadata.
+     * @throws IOException If the metadata cannot be made.
+     */
+    private IIOMetadata gifMetadata(ImageWriter writer, BufferedImage image) throws IOException
+    {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), null);
+        String formatName = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(formatName);
+
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(frameDelay));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+
+        if(written == 0) {
+            IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            // Loop for ever.
+            loop.setUserObject(new byte[] {1, 0, 0});
+            extensions.appendChild(loop);
+            root.appendChild(extensions);
+        }
+        metadata.setFromTree(formatName, root);
+        return metadata;
+    }
+
+    /**
+     * After an error, return each frame's buffer without writing it,
+     * until the end frame is reached.
+     */
+    private void drainAfterError()
+    {
+        try {
+            Frame frame = frames.take();
+            while(frame != END) {
+                freeBuffers.add(frame.codes);
+                frame = frames.take();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The codes of the field at a step.
+     */
+    private static class Frame
+    {
+        private final int step;
+        private final byte[] codes;
+
+        private Frame(int step, byte[] codes)
+        {
+            this.step = step;
+            this.codes = codes;
+        }
+    }
+}
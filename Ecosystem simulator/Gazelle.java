@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Random;
 import java.util.Iterator;
 
 /**
@@ -13,12 +12,12 @@ public class Gazelle extends Prey
 {
     // Characteristics shared by all gazelles (class variables).
 
-    // The age at which a gazelle can start to breed.
-    private static final int BREEDING_AGE = 4;
+    // The default age at which a gazelle can start to breed.
+    private static final int DEFAULT_BREEDING_AGE = 4;
     // The age to which a gazelle can live.
     private static final int MAX_AGE = 100;
-    // The likelihood of a gazelle breeding.
-    private static final double BREEDING_PROBABILITY = 0.80;
+    // The default likelihood of a gazelle breeding.
+    private static final double DEFAULT_BREEDING_PROBABILITY = 0.80;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 9;
     // The food value gained when this animal is consumed.
@@ -30,8 +29,11 @@ public class Gazelle extends Prey
     // The maximum level of food that can be consumed by this animal.
     private static final int maxFL = 15;
     
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The age at which a gazelle can start to breed.
+    private static int breedingAge = DEFAULT_BREEDING_AGE;
+    // The likelihood of a gazelle breeding.
+    private static double breedingProbability = DEFAULT_BREEDING_PROBABILITY;
+
 
     /**
      * Create a new gazelle. A gazelle may be created with age
@@ -45,6 +47,33 @@ public class Gazelle extends Prey
     {
         super(randomAge, field, location);
     }
+
+    /**
+     * Sets the age at which gazelles can start to breed.
+     * @param age The new breeding age.
+     */
+    public static void setBreedingAge(int age)
+    {
+        breedingAge = age;
+    }
+
+    /**
+     * Sets the likelihood of gazelles breeding.
+     * @param probability The new breeding probability.
+     */
+    public static void setBreedingProbability(double probability)
+    {
+        breedingProbability = probability;
+    }
+
+    /**
+     * Restores the default breeding age and likelihood of gazelles.
+     */
+    public static void resetBreeding()
+    {
+        breedingAge = DEFAULT_BREEDING_AGE;
+        breedingProbability = DEFAULT_BREEDING_PROBABILITY;
+    }
     
     /**
      * @return The max level of food that can be consumed
@@ -70,7 +99,7 @@ public class Gazelle extends Prey
      */
     protected boolean canBreed()
     {
-        return getAge() >= BREEDING_AGE && findPartner();
+        return getAge() >= breedingAge && findPartner();
     }
 
     /**
@@ -125,8 +154,8 @@ public class Gazelle extends Prey
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && Randomizer.getRandom().nextDouble() <= breedingProbability) {
+            births = Randomizer.getRandom().nextInt(MAX_LITTER_SIZE) + 1;
         }
         return births;
     }
@@ -135,7 +164,7 @@ public class Gazelle extends Prey
      * @return The probability this animal can breed.
      */
     public double getBreedingProbability(){
-        return BREEDING_PROBABILITY;   
+        return breedingProbability;   
     }
 
 }
\ No newline at end of file
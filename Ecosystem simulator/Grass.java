@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Random;
 import java.util.Iterator;
 
 /**
@@ -24,8 +23,6 @@ public class Grass extends Plant
     // The food value gained when this plant is consumed.
     private static final int myFoodValue = 1;
 
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
     
     // Individual characteristics (instance fields).
     // The Grass's age.
@@ -63,8 +60,7 @@ public class Grass extends Plant
         // Get a list of adjacent free locations.
         Field field = getField();
         List<Location> free = field.getFreeAdjacentLocations(getLocation());
-        String curWeather = Weather.getWeather();
-        if(curWeather != null && (curWeather.equals("rain") || curWeather.equals("mist"))){
+        if(isBreedingWeather()){
             int births = breed();
             for(int b = 0; b < births && free.size() > 0; b++) {
                 Location loc = free.remove(0);
@@ -74,6 +70,15 @@ public class Grass extends Plant
         }
     }
 
+    /**
+     * Grass breeds in rain and mist.
+     * @return true if the current weather is rain or mist.
+     */
+    protected boolean isBreedingWeather(){
+        String curWeather = Weather.getWeather();
+        return curWeather != null && (curWeather.equals("rain") || curWeather.equals("mist"));
+    }
+
     /**
      * Generates a random breeding probability if the 
      * weather is misty
@@ -82,7 +87,7 @@ public class Grass extends Plant
     protected double getBreedingProbability(){
         String curWeather = Weather.getWeather();
         if(curWeather.equals("mist")){ 
-            double randomValue = 0.01 + (0.01 - 0.001) * rand.nextDouble();
+            double randomValue = 0.01 + (0.01 - 0.001) * Randomizer.getRandom().nextDouble();
             return randomValue;
         } 
         else {
@@ -0,0 +1,298 @@
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A map of the species in each position of a field, stored in a file,
+ * from which a simulation can start instead of from a random field.
+ *
+ * A map is either a raw species map, holding one byte per position
+ * row by row, or an image, holding one pixel per position. Each byte
+ * or colour is a key, which is given a species and a range of starting
+ * ages; positions with other keys are left empty. A raw species map
+ * uses the species codes of MappedField unless told otherwise.
+ *
+ * Maps are read a piece at a time, so that a map need not fit in the
+ * heap as well as the actors it creates: raw species maps are mapped
+ * into memory, and images are decoded in strips of rows. Decoding an
+ * image strip re-reads the image up to that strip, so very large maps
+ * are faster to load as raw species maps.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class HabitatMap
+{
+    // The number of bytes of a raw species map mapped at a time.
+    private static final int REGION_BYTES = 1 << 30;
+    // The number of pixels of an image decoded at a time.
+    private static final int STRIP_PIXELS = 1 << 22;
+    // The way of creating each species, with a random age.
+    private static final Map<Class<?>, BiFunction<Field, Location, Actor>> FACTORIES = createFactories();
+
+    // The file holding the map.
+    private Path file;
+    // Whether the file is an image rather than a raw species map.
+    private boolean image;
+    // What is placed for each key.
+    private Map<Integer, Seed> seeds;
+
+    /**
+     * Create a map to be read from a file.
+     * @param file The file holding the map.
+     * @param image Whether the file is an image rather than a raw species map.
+     */
+    private HabitatMap(Path file, boolean image)
+    {
+        this.file = file;
+        this.image = image;
+        seeds = new HashMap<>();
+    }
+
+    /**
+     * Create a map read from a raw species map: one byte per position,
+     * row by row, holding the species codes of MappedField.
+     * @param file The file holding the map.
+     * @return The map.
+     */
+    public static HabitatMap speciesMap(Path file)
+    {
+        HabitatMap map = new HabitatMap(file, false);
+        for(int code = 1; MappedField.getSpecies(code) != null; code++) {
+            map.setSpecies(code, MappedField.getSpecies(code));
+        }
+        return map;
+    }
+
+    /**
+     * Create a map read from an image, with one pixel per position.
+     * The colour of each species must be set with setSpecies.
+     * @param file The file holding the image, in any format that
+     * ImageIO can read, such as PNG.
+     * @return The map.
+     */
+    public static HabitatMap image(Path file)
+    {
+        return new HabitatMap(file, true);
+    }
+
+    /**
+     * Place a species, with random ages, where a key appears.
+     * @param key The byte of a species map, or the RGB colour of an image.
+     * @param species The class of the species.
+     */
+    public void setSpecies(int key, Class<?> species)
+    {
+        seeds.put(key, new Seed(factoryFor(species), -1, -1));
+    }
+
+    /**
+     * Place a species, with ages drawn evenly from a range, where a
+     * key appears. The ages should be less than the species' maximum.
+     * @param key The byte of a species map, or the RGB colour of an image.
+     * @param species The class of the species.
+     * @param minAge The youngest starting age.
+     * @param maxAge The oldest starting age.
+     */
+    public void setSpecies(int key, Class<?> species, int minAge, int maxAge)
+    {
+        if(minAge < 0 || maxAge < minAge) {
+            throw new IllegalArgumentException("Bad age range " + minAge + " to " + maxAge);
+        }
+        seeds.put(key, new Seed(factoryFor(species), minAge, maxAge));
+    }
+
+    /**
+     * Place a species where a colour appears in an image.
+     * @param color The colour.
+     * @param species The class of the species.
+     */
+    public void setSpecies(Color color, Class<?> species)
+    {
+        setSpecies(color.getRGB() & 0xffffff, species);
+    }
+
+    /**
+     * Fill an empty field from the map. The map must be the same size
+     * as the field.
+     * @param field The field to fill.
+     * @return The actors created, row by row.
+     * @throws IOException If the map cannot be read or is the wrong size.
+     */
+    public List<Actor> load(Field field) throws IOException
+    {
+        if(image) {
+            return loadImage(field);
+        }
+        return loadSpeciesMap(field);
+    }
+
+    /**
+     * Fill a field from a raw species map.
+     * @param field The field to fill.
+     * @return The actors created.
+     * @throws IOException If the map cannot be read or is the wrong size.
+     */
+    private List<Actor> loadSpeciesMap(Field field) throws IOException
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        long size = (long) depth * width;
+        List<Actor> actors = new ArrayList<>();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() != size) {
+                throw new IOException(file + " holds " + channel.size()
+                                      + " positions, but the field has " + size);
+            }
+            // Each region is a whole number of rows, so rows are not split.
+            int rowsPerRegion = Math.max(1, REGION_BYTES / width);
+            for(int top = 0; top < depth; top += rowsPerRegion) {
+                int rows = Math.min(rowsPerRegion, depth - top);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                      (long) top * width, (long) rows * width);
+                for(int row = 0; row < rows; row++) {
+                    for(int col = 0; col < width; col++) {
+                        place(field, top + row, col, region.get(row * width + col) & 0xff, actors);
+                    }
+                }
+            }
+        }
+        return actors;
+    }
+
+    /**
+     * Fill a field from an image.
+     * @param field The field to fill.
+     * @return The actors created.
+     * @throws IOException If the image cannot be read or is the wrong size.
+     */
+    private List<Actor> loadImage(Field field) throws IOException
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        List<Actor> actors = new ArrayList<>();
+        try(ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if(input == null) {
+                throw new IOException("Cannot read " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if(!readers.hasNext()) {
+                throw new IOException("No image reader for " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if(reader.getHeight(0) != depth || reader.getWidth(0) != width) {
+                    throw new IOException(file + " is " + reader.getWidth(0) + "x" + reader.getHeight(0)
+                                          + ", but the field is " + width + "x" + depth);
+                }
+                int stripRows = Math.max(1, STRIP_PIXELS / width);
+                int[] pixels = new int[width];
+                for(int top = 0; top < depth; top += stripRows) {
+                    int rows = Math.min(stripRows, depth - top);
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceRegion(new Rectangle(0, top, width, rows));
+                    BufferedImage strip = reader.read(0, param);
+                    for(int row = 0; row < rows; row++) {
+                        strip.getRGB(0, row, width, 1, pixels, 0, width);
+                        for(int col = 0; col < width; col++) {
+                            place(field, top + row, col, pixels[col] & 0xffffff, actors);
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+        return actors;
+    }
+
+    /**
+     * Place what a key stands for in a position, if anything.
+     * @param field The field being filled.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @param key The key read for the position.
+     * @param actors The list to which a new actor is added.
+     */
+    private void place(Field field, int row, int col, int key, List<Actor> actors)
+    {
+        Seed seed = seeds.get(key);
+        if(seed == null) {
+            return;
+        }
+        Actor actor = seed.factory.apply(field, new Location(row, col));
+        if(seed.minAge >= 0) {
+            Random rand = Randomizer.getRandom();
+            actor.setAge(seed.minAge + rand.nextInt(seed.maxAge - seed.minAge + 1));
+        }
+        actors.add(actor);
+    }
+
+    /**
+     * Return the way of creating a species.
+     * @param species The class of the species.
+     * @return A function creating a member of the species with a random age.
+     */
+    private static BiFunction<Field, Location, Actor> factoryFor(Class<?> species)
+    {
+        BiFunction<Field, Location, Actor> factory = FACTORIES.get(species);
+        if(factory == null) {
+            throw new IllegalArgumentException("Unknown species " + species.getName());
+        }
+        return factory;
+    }
+
+    /**
+     * @return The way of creating each species, with a random age.
+     */
+    private static Map<Class<?>, BiFunction<Field, Location, Actor>> createFactories()
+    {
+        Map<Class<?>, BiFunction<Field, Location, Actor>> factories = new LinkedHashMap<>();
+        factories.put(Grass.class, (f, l) -> new Grass(true, f, l));
+        factories.put(PoisonIvy.class, (f, l) -> new PoisonIvy(true, f, l));
+        factories.put(Zebra.class, (f, l) -> new Zebra(true, f, l));
+        factories.put(Gazelle.class, (f, l) -> new Gazelle(true, f, l));
+        factories.put(Giraffe.class, (f, l) -> new Giraffe(true, f, l));
+        factories.put(Lion.class, (f, l) -> new Lion(true, f, l));
+        factories.put(Hyena.class, (f, l) -> new Hyena(true, f, l));
+        return factories;
+    }
+
+    /**
+     * What is placed where a key appears.
+     */
+    private static class Seed
+    {
+        // Creates a member of the species.
+        private final BiFunction<Field, Location, Actor> factory;
+        // The range of starting ages, or -1 for the species' own random ages.
+        private final int minAge;
+        private final int maxAge;
+
+        private Seed(BiFunction<Field, Location, Actor> factory, int minAge, int maxAge)
+        {
+            this.factory = factory;
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for an animal catching the disease.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+@Name("savannah.Infection")
+@Label("Infection")
+@Category("Savannah")
+@Description("An animal caught the disease")
+public class InfectionEvent extends jdk.jfr.Event
+{
+    @Label("Species")
+    String species;
+
+    @Label("Inherited")
+    @Description("Whether the disease was passed on at birth")
+    boolean inherited;
+
+    @Label("Infected Count")
+    int infectedCount;
+}
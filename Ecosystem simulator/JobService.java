@@ -0,0 +1,579 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived service that runs simulation jobs submitted to it, so
+ * that many runs share one warmed-up JVM instead of each paying for
+ * a fresh start and throwing the compiled code away at the end.
+ *
+ * A job gives the size of the field, the seed, the probability of
+ * creating each species and the number of steps. Jobs wait in a queue
+ * and are run by a single worker thread: the clock, the weather, the
+ * disease and the random number generator are shared by the whole
+ * simulation, so two runs in one JVM cannot overlap. Everything else
+ * a job does, answering requests about it and writing its results, is
+ * done on a separate pool of threads, so the worker goes straight on
+ * to the next job.
+ *
+ * The results of each job are written to the results directory as
+ * job-N.properties, giving the job, its outcome and the final state
+ * hash, and job-N.csv, giving the population of each species at each
+ * step. Each file is written under a temporary name and then renamed,
+ * so a reader never sees half a file.
+ *
+ * The service can be driven from code or, from main, over HTTP:
+ * <ul>
+ * <li>POST /jobs?depth=D&amp;width=W&amp;seed=S&amp;steps=N&amp;Zebra=0.3...
+ * submits a job, giving any species' probability by its name, and
+ * answers with the job's number.</li>
+ * <li>GET /jobs lists the jobs and their status.</li>
+ * <li>GET /jobs/N gives one job's status and results so far.</li>
+ * <li>POST /jobs/N/cancel cancels a job, before or while it runs.</li>
+ * </ul>
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class JobService implements AutoCloseable
+{
+    /**
+     * The stages of a job.
+     */
+    public enum Status
+    {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED
+    }
+
+    // The default port on which main listens.
+    private static final int DEFAULT_PORT = 8090;
+    // The default number of threads for requests and results.
+    private static final int DEFAULT_IO_THREADS = 4;
+
+    // The directory the results are written to.
+    private Path resultsDirectory;
+    // The thread running the jobs, one at a time.
+    private ExecutorService worker;
+    // The threads answering requests and writing results.
+    private ExecutorService io;
+    // The jobs submitted, by number.
+    private Map<Integer, Job> jobs;
+    // The number of the next job.
+    private AtomicInteger nextId;
+    // The HTTP server, or null if not listening.
+    private HttpServer server;
+
+    /**
+     * Create a service, with nothing queued.
+     * @param resultsDirectory The directory to write results to.
+     * @param ioThreads The number of threads answering requests and
+     * writing results.
+     * @throws IOException If the results directory cannot be created.
+     */
+    public JobService(Path resultsDirectory, int ioThreads) throws IOException
+    {
+        this.resultsDirectory = Files.createDirectories(resultsDirectory);
+        worker = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "simulation-worker"));
+        io = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "job-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        jobs = new LinkedHashMap<>();
+        nextId = new AtomicInteger(1);
+    }
+
+    /**
+     * Start a service writing to the directory given, or to "results",
+     * and take jobs over HTTP on the port given, or on 8090.
+     * @param args Optionally the results directory, then the port.
+     * @throws IOException If the directory cannot be created or the
+     * port cannot be listened on.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "results");
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        JobService service = new JobService(directory, DEFAULT_IO_THREADS);
+        service.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        System.out.println("Taking jobs on " + service.getAddress() + ", results in " + directory);
+    }
+
+    /**
+     * Queue a job.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param seed The seed of the random number generator.
+     * @param probabilities The probability of creating each species
+     * in a position, for any species not to use its default.
+     * @param steps The number of steps to run for. The job ends sooner
+     * if the simulation stops being viable.
+     * @return The job.
+     */
+    public Job submit(int depth, int width, long seed, Map<Class<?>, Double> probabilities, int steps)
+    {
+        if(depth <= 0 || width <= 0 || steps < 0) {
+            throw new IllegalArgumentException("The field and the number of steps must not be empty");
+        }
+        Job job = new Job(nextId.getAndIncrement(), depth, width, seed, probabilities, steps);
+        synchronized(jobs) {
+            jobs.put(job.id, job);
+        }
+        worker.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * Return a job.
+     * @param id The job's number.
+     * @return The job, or null if there is none with that number.
+     */
+    public Job getJob(int id)
+    {
+        synchronized(jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * @return The jobs submitted, in order.
+     */
+    public List<Job> getJobs()
+    {
+        synchronized(jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Take jobs over HTTP.
+     * @param address The address to listen on.
+     * @throws IOException If the address cannot be listened on.
+     */
+    public void listen(InetSocketAddress address) throws IOException
+    {
+        server = HttpServer.create(address, 0);
+        server.setExecutor(io);
+        server.createContext("/jobs", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return The address taking jobs, or null if not listening.
+     */
+    public InetSocketAddress getAddress()
+    {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * Stop taking requests, cancel the jobs still queued, and wait for
+     * the running job and the results being written.
+     */
+    public void close()
+    {
+        if(server != null) {
+            server.stop(0);
+        }
+        for(Job job : getJobs()) {
+            if(job.status == Status.QUEUED) {
+                job.cancel();
+            }
+        }
+        worker.shutdown();
+        try {
+            // The worker hands its last results to the I/O threads.
+            worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            io.shutdown();
+            io.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run a job on the worker, then hand its results to be written.
+     * @param job The job.
+     */
+    private void run(Job job)
+    {
+        if(job.cancelled) {
+            finish(job, Status.CANCELLED, null);
+            return;
+        }
+        job.status = Status.RUNNING;
+        List<Class<?>> species = new ArrayList<>(Simulator.getSpeciesColors().keySet());
+        try {
+            long start = System.nanoTime();
+            Randomizer.reset(job.seed);
+            Disease.resetDiseasedProbability();
+            Field field = new Field(job.depth, job.width);
+            // The pyramid keeps the populations up to date as the run goes.
+            field.setPyramidEnabled(true);
+            Simulator simulator = new Simulator(field, false, job.probabilities);
+            job.populations.add(countPopulations(field, species));
+            while(job.stepsRun < job.steps && !job.cancelled && simulator.isViable()) {
+                simulator.simulateOneStep();
+                job.populations.add(countPopulations(field, species));
+                job.stepsRun++;
+            }
+            job.finalHash = simulator.getStateHash();
+            job.elapsedNanos = System.nanoTime() - start;
+            finish(job, job.cancelled ? Status.CANCELLED : Status.DONE, species);
+        }
+        catch(RuntimeException e) {
+            job.error = e.toString();
+            finish(job, Status.FAILED, species);
+        }
+    }
+
+    /**
+     * Record the end of a job, and write its results on an I/O thread.
+     * @param job The job.
+     * @param status How the job ended.
+     * @param species The species counted, or null if the job never ran.
+     */
+    private void finish(Job job, Status status, List<Class<?>> species)
+    {
+        job.status = status;
+        CompletableFuture.runAsync(() -> {
+            try {
+                writeResults(job, species);
+                job.result.complete(job);
+            }
+            catch(IOException e) {
+                job.result.completeExceptionally(e);
+            }
+        }, io);
+    }
+
+    /**
+     * Write the results of a job.
+     * @param job The job.
+     * @param species The species counted, or null if the job never ran.
+     * @throws IOException If the results cannot be written.
+     */
+    private void writeResults(Job job, List<Class<?>> species) throws IOException
+    {
+        Path summary = resultsDirectory.resolve("job-" + job.id + ".properties");
+        Path summaryTemp = resultsDirectory.resolve("job-" + job.id + ".properties.tmp");
+        try(Writer out = Files.newBufferedWriter(summaryTemp, StandardCharsets.UTF_8)) {
+            job.describe().store(out, "Simulation job " + job.id);
+        }
+        Files.move(summaryTemp, summary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if(species == null) {
+            return;
+        }
+        Path table = resultsDirectory.resolve("job-" + job.id + ".csv");
+        Path tableTemp = resultsDirectory.resolve("job-" + job.id + ".csv.tmp");
+        try(Writer out = Files.newBufferedWriter(tableTemp, StandardCharsets.UTF_8)) {
+            out.write("step");
+            for(Class<?> kind : species) {
+                out.write("," + kind.getSimpleName());
+            }
+            out.write("\n");
+            for(int step = 0; step < job.populations.size(); step++) {
+                out.write(Integer.toString(step));
+                for(int count : job.populations.get(step)) {
+                    out.write("," + count);
+                }
+                out.write("\n");
+            }
+        }
+        Files.move(tableTemp, table, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Count the population of each species.
+     * @param field The field, with its pyramid enabled.
+     * @param species The species to count.
+     * @return The population of each species, in order.
+     */
+    private static int[] countPopulations(Field field, List<Class<?>> species)
+    {
+        int[] counts = new int[species.size()];
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = field.getPyramid().getTotal(species.get(i));
+        }
+        return counts;
+    }
+
+    /**
+     * Answer a request about the jobs.
+     * @param exchange The request.
+     * @throws IOException If the reply cannot be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        String method = exchange.getRequestMethod();
+        try {
+            // The path splits into "", "jobs", then the job number and action.
+            if(parts.length == 2 && method.equals("GET")) {
+                StringBuilder text = new StringBuilder();
+                for(Job job : getJobs()) {
+                    text.append(job).append('\n');
+                }
+                respond(exchange, 200, text.toString());
+            }
+            else if(parts.length == 2 && method.equals("POST")) {
+                Job job = submitFromQuery(exchange.getRequestURI().getRawQuery());
+                respond(exchange, 202, job.id + "\n");
+            }
+            else if(parts.length == 3 && method.equals("GET")) {
+                Job job = findJob(parts[2]);
+                StringBuilder text = new StringBuilder();
+                for(Map.Entry<Object, Object> entry : job.describe().entrySet()) {
+                    text.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+                }
+                respond(exchange, 200, text.toString());
+            }
+            else if(parts.length == 4 && parts[3].equals("cancel") && method.equals("POST")) {
+                findJob(parts[2]).cancel();
+                respond(exchange, 200, "cancelled\n");
+            }
+            else {
+                respond(exchange, 404, "No such request\n");
+            }
+        }
+        catch(IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        }
+        catch(IllegalStateException e) {
+            respond(exchange, 404, e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * Submit a job described by the query of a request.
+     * @param query The query, such as "depth=150&amp;width=210&amp;Zebra=0.2".
+     * @return The job.
+     * @throws IllegalArgumentException If the query is not valid.
+     */
+    private Job submitFromQuery(String query)
+    {
+        Map<String, Class<?>> speciesByName = new HashMap<>();
+        for(Class<?> kind : Simulator.getSpeciesColors().keySet()) {
+            speciesByName.put(kind.getSimpleName(), kind);
+        }
+        Map<String, String> values = new HashMap<>();
+        if(query != null) {
+            for(String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if(equals <= 0) {
+                    throw new IllegalArgumentException("Not a parameter: " + pair);
+                }
+                values.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                           URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        try {
+            int depth = Integer.parseInt(values.getOrDefault("depth", "150"));
+            int width = Integer.parseInt(values.getOrDefault("width", "210"));
+            long seed = Long.parseLong(values.getOrDefault("seed", "1111"));
+            int steps = Integer.parseInt(values.getOrDefault("steps", "500"));
+            Map<Class<?>, Double> probabilities = new HashMap<>();
+            for(Map.Entry<String, String> entry : values.entrySet()) {
+                String name = entry.getKey();
+                if(speciesByName.containsKey(name)) {
+                    probabilities.put(speciesByName.get(name), Double.parseDouble(entry.getValue()));
+                }
+                else if(!List.of("depth", "width", "seed", "steps").contains(name)) {
+                    throw new IllegalArgumentException("Unknown parameter " + name);
+                }
+            }
+            return submit(depth, width, seed, probabilities, steps);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Find a job from its number in a request.
+     * @param id The job's number, as text.
+     * @return The job.
+     * @throws IllegalStateException If there is no such job.
+     */
+    private Job findJob(String id)
+    {
+        Job job = null;
+        try {
+            job = getJob(Integer.parseInt(id));
+        }
+        catch(NumberFormatException e) {
+            // Not a job number.
+        }
+        if(job == null) {
+            throw new IllegalStateException("No job " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Send a reply and end the exchange.
+     * @param exchange The request.
+     * @param status The HTTP status.
+     * @param body The text of the reply.
+     * @throws IOException If the reply cannot be sent.
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A simulation job: what to run, and how it is going.
+     */
+    public static class Job
+    {
+        // The job's number.
+        private final int id;
+        // The size of the field.
+        private final int depth, width;
+        // The seed of the random number generator.
+        private final long seed;
+        // The probability of creating each species, where not the default.
+        private final Map<Class<?>, Double> probabilities;
+        // The number of steps to run for.
+        private final int steps;
+        // The stage the job has reached.
+        private volatile Status status;
+        // Whether the job has been cancelled.
+        private volatile boolean cancelled;
+        // The number of steps run so far.
+        private volatile int stepsRun;
+        // The hash of the final state, once run.
+        private volatile long finalHash;
+        // The time taken to run, in nanoseconds.
+        private volatile long elapsedNanos;
+        // The error that ended the job, if it failed.
+        private volatile String error;
+        // The population of each species at each step, from step zero.
+        private final List<int[]> populations;
+        // Completed once the job's results have been written.
+        private final CompletableFuture<Job> result;
+
+        private Job(int id, int depth, int width, long seed, Map<Class<?>, Double> probabilities, int steps)
+        {
+            this.id = id;
+            this.depth = depth;
+            this.width = width;
+            this.seed = seed;
+            this.probabilities = new HashMap<>(probabilities);
+            this.steps = steps;
+            status = Status.QUEUED;
+            populations = new ArrayList<>();
+            result = new CompletableFuture<>();
+        }
+
+        /**
+         * @return The job's number.
+         */
+        public int getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return The stage the job has reached.
+         */
+        public Status getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return The number of steps run so far.
+         */
+        public int getStepsRun()
+        {
+            return stepsRun;
+        }
+
+        /**
+         * @return The hash of the final state, once the job is done.
+         */
+        public long getFinalHash()
+        {
+            return finalHash;
+        }
+
+        /**
+         * @return Completed, with this job, once its results are written.
+         */
+        public CompletableFuture<Job> getResult()
+        {
+            return result;
+        }
+
+        /**
+         * Cancel the job. A queued job is not run, and a running job
+         * stops after its current step; the results so far are written.
+         */
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        /**
+         * @return A description of the job and its outcome.
+         */
+        private Properties describe()
+        {
+            Properties properties = new Properties();
+            properties.setProperty("id", Integer.toString(id));
+            properties.setProperty("status", status.toString());
+            properties.setProperty("depth", Integer.toString(depth));
+            properties.setProperty("width", Integer.toString(width));
+            properties.setProperty("seed", Long.toString(seed));
+            properties.setProperty("steps", Integer.toString(steps));
+            for(Map.Entry<Class<?>, Double> entry : probabilities.entrySet()) {
+                properties.setProperty("probability." + entry.getKey().getSimpleName(), entry.getValue().toString());
+            }
+            properties.setProperty("stepsRun", Integer.toString(stepsRun));
+            if(status == Status.DONE || status == Status.CANCELLED && stepsRun > 0) {
+                properties.setProperty("finalHash", Long.toHexString(finalHash));
+                properties.setProperty("elapsedMillis", Long.toString(elapsedNanos / 1_000_000));
+            }
+            if(error != null) {
+                properties.setProperty("error", error);
+            }
+            return properties;
+        }
+
+        @Override
+        public String toString()
+        {
+            return id + " " + status + " " + stepsRun + "/" + steps;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 
 import java.util.Iterator;
-import java.util.Random;
 import java.util.List;
 import java.util.HashSet;
 import java.util.Set;
@@ -16,12 +15,12 @@ public class Lion extends Predator
 {
     // Characteristics shared by all lions (class variables).
 
-    // The age at which a lion can start to breed.
-    private static final int BREEDING_AGE = 85;
+    // The default age at which a lion can start to breed.
+    private static final int DEFAULT_BREEDING_AGE = 85;
     // The age to which a lion can live.
     private static final int MAX_AGE = 270;
-    // The likelihood of a lion breeding.
-    private static final double BREEDING_PROBABILITY = 0.20;
+    // The default likelihood of a lion breeding.
+    private static final double DEFAULT_BREEDING_PROBABILITY = 0.20;
     // The maximum number of births.
     private static final int MAX_LITTER_SIZE = 2;
     // The time this animal goes to sleep.
@@ -31,8 +30,11 @@ public class Lion extends Predator
     // The maximum level of food that can be consumed by this animal.
     private static final int maxFL = 65;
 
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
+    // The age at which a lion can start to breed.
+    private static int breedingAge = DEFAULT_BREEDING_AGE;
+    // The likelihood of a lion breeding.
+    private static double breedingProbability = DEFAULT_BREEDING_PROBABILITY;
+
 
     /**
      * Create a lion. A lion can be created as a new born (age zero
@@ -47,6 +49,33 @@ public class Lion extends Predator
         super(randomAge, field, location);
     }
 
+    /**
+     * Sets the age at which lions can start to breed.
+     * @param age The new breeding age.
+     */
+    public static void setBreedingAge(int age)
+    {
+        breedingAge = age;
+    }
+
+    /**
+     * Sets the likelihood of lions breeding.
+     * @param probability The new breeding probability.
+     */
+    public static void setBreedingProbability(double probability)
+    {
+        breedingProbability = probability;
+    }
+
+    /**
+     * Restores the default breeding age and likelihood of lions.
+     */
+    public static void resetBreeding()
+    {
+        breedingAge = DEFAULT_BREEDING_AGE;
+        breedingProbability = DEFAULT_BREEDING_PROBABILITY;
+    }
+
     /**
      * @return The max level of food that can be consumed
      * by this Animal.
@@ -63,7 +92,7 @@ public class Lion extends Predator
      */
     protected boolean canBreed()
     {
-        return getAge() >= BREEDING_AGE && findPartner();
+        return getAge() >= breedingAge && findPartner();
     }
 
     /**
@@ -117,8 +146,8 @@ public class Lion extends Predator
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && Randomizer.getRandom().nextDouble() <= breedingProbability) {
+            births = Randomizer.getRandom().nextInt(MAX_LITTER_SIZE) + 1;
         }
         return births;
     }
@@ -127,7 +156,7 @@ public class Lion extends Predator
      * @return The probability this animal can breed.
      */
     public double getBreedingProbability(){
-        return BREEDING_PROBABILITY;   
+        return breedingProbability;   
     }
 
 }
\ No newline at end of file
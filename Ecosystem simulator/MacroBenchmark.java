@@ -0,0 +1,345 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs a library of fixed scenarios headless and checks them against
+ * a baseline, to catch changes that make the simulation slower or
+ * that change what it does. For each scenario the speed in steps per
+ * second, the bytes allocated per step, the time spent collecting
+ * garbage and the peak heap are measured, along with the hash of the
+ * final state.
+ *
+ * Run with "record" to write the baseline file, and without it to
+ * compare against the baseline. The comparison fails, with a non-zero
+ * exit status, if a measure is worse than the baseline by more than
+ * the threshold or if a final state hash differs. A different hash
+ * means the simulation no longer behaves the same, so a speedup that
+ * changes the hash needs the baseline to be recorded again on purpose.
+ *
+ * Every scenario starts from the shared seed. The clock, the weather
+ * and the random number generator are shared by the whole simulation,
+ * so the scenarios are run one after another.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class MacroBenchmark
+{
+    // The default file holding the baseline.
+    private static final String DEFAULT_BASELINE_FILE = "benchmark-baseline.properties";
+    // The default fraction by which a measure may be worse than the baseline.
+    private static final double DEFAULT_THRESHOLD = 0.10;
+    // Increases in garbage collection time below this are treated as noise.
+    private static final long GC_NOISE_MILLIS = 50;
+    // The number of steps run before measuring, so that the code is compiled.
+    private static final int WARM_UP_STEPS = 100;
+
+    // The scenarios, in the order they are run.
+    private static final List<Scenario> SCENARIOS = createScenarios();
+
+    /**
+     * Run the scenarios and either record them as the baseline or
+     * compare them against it.
+     * @param args Optionally "record", then the baseline file and the
+     * threshold as a fraction.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int next = 0;
+        boolean record = args.length > next && args[next].equals("record");
+        if(record) {
+            next++;
+        }
+        String baselineFile = args.length > next ? args[next++] : DEFAULT_BASELINE_FILE;
+        double threshold = args.length > next ? Double.parseDouble(args[next]) : DEFAULT_THRESHOLD;
+
+        warmUp();
+        List<Result> results = new ArrayList<>();
+        for(Scenario scenario : SCENARIOS) {
+            Result result = run(scenario);
+            System.out.println(result);
+            results.add(result);
+        }
+
+        if(record) {
+            saveBaseline(results, baselineFile);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+        List<String> failures = compare(results, loadBaseline(baselineFile), threshold);
+        for(String failure : failures) {
+            System.out.println("FAIL " + failure);
+        }
+        if(!failures.isEmpty()) {
+            System.exit(1);
+        }
+        System.out.println("All scenarios within " + Math.round(threshold * 100) + "% of the baseline");
+    }
+
+    /**
+     * @return The library of scenarios.
+     */
+    private static List<Scenario> createScenarios()
+    {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("default", 150, 210, 500));
+
+        Scenario preyBoom = new Scenario("prey-boom", 150, 210, 300);
+        preyBoom.probabilities.put(Zebra.class, 0.60);
+        preyBoom.probabilities.put(Gazelle.class, 0.60);
+        preyBoom.probabilities.put(Giraffe.class, 0.60);
+        preyBoom.probabilities.put(Lion.class, 0.005);
+        preyBoom.probabilities.put(Hyena.class, 0.005);
+        scenarios.add(preyBoom);
+
+        Scenario predatorHeavy = new Scenario("predator-heavy", 150, 210, 300);
+        predatorHeavy.probabilities.put(Lion.class, 0.15);
+        predatorHeavy.probabilities.put(Hyena.class, 0.15);
+        scenarios.add(predatorHeavy);
+
+        Scenario epidemic = new Scenario("epidemic", 150, 210, 300);
+        epidemic.diseasedProbability = 0.05;
+        scenarios.add(epidemic);
+
+        Scenario sparse = new Scenario("sparse-2000", 2000, 2000, 100);
+        sparse.probabilities.put(Zebra.class, 0.01);
+        sparse.probabilities.put(Gazelle.class, 0.01);
+        sparse.probabilities.put(Giraffe.class, 0.01);
+        sparse.probabilities.put(Lion.class, 0.001);
+        sparse.probabilities.put(Hyena.class, 0.001);
+        sparse.probabilities.put(Grass.class, 0.02);
+        sparse.probabilities.put(PoisonIvy.class, 0.001);
+        scenarios.add(sparse);
+        return scenarios;
+    }
+
+    /**
+     * Run the first scenario for a while without measuring it.
+     */
+    private static void warmUp()
+    {
+        Simulator simulator = start(SCENARIOS.get(0));
+        for(int step = 0; step < WARM_UP_STEPS; step++) {
+            simulator.simulateOneStep();
+        }
+    }
+
+    /**
+     * Create the simulator for a scenario, from the shared seed.
+     * @param scenario The scenario.
+     * @return The new simulator, at step zero.
+     */
+    private static Simulator start(Scenario scenario)
+    {
+        Randomizer.reset();
+        Disease.resetDiseasedProbability();
+        if(scenario.diseasedProbability != null) {
+            Disease.setDiseasedProbability(scenario.diseasedProbability);
+        }
+        return new Simulator(new Field(scenario.depth, scenario.width), false, scenario.probabilities);
+    }
+
+    /**
+     * Run a scenario and measure it. The population of the field is
+     * not included in the measures.
+     * @param scenario The scenario.
+     * @return The measures of the run.
+     */
+    private static Result run(Scenario scenario)
+    {
+        System.gc();
+        Simulator simulator = start(scenario);
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long gcBefore = getCollectionMillis();
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for(int step = 0; step < scenario.steps; step++) {
+            simulator.simulateOneStep();
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        Result result = new Result(scenario.name);
+        result.stepsPerSecond = scenario.steps * 1e9 / elapsed;
+        result.bytesPerStep = (getAllocatedBytes() - allocatedBefore) / scenario.steps;
+        result.gcMillis = getCollectionMillis() - gcBefore;
+        result.peakHeapBytes = getPeakHeapBytes();
+        result.finalHash = simulator.getStateHash();
+        return result;
+    }
+
+    /**
+     * Compare results against the baseline.
+     * @param results The results of this run.
+     * @param baseline The baseline.
+     * @param threshold The fraction by which a measure may be worse.
+     * @return A description of each regression.
+     */
+    private static List<String> compare(List<Result> results, Properties baseline, double threshold)
+    {
+        List<String> failures = new ArrayList<>();
+        for(Result result : results) {
+            String name = result.name;
+            if(baseline.getProperty(name + ".hash") == null) {
+                failures.add(name + ": not in the baseline");
+                continue;
+            }
+            if(!baseline.getProperty(name + ".hash").equals(Long.toHexString(result.finalHash))) {
+                failures.add(name + ": final state hash " + Long.toHexString(result.finalHash)
+                             + " differs from " + baseline.getProperty(name + ".hash"));
+            }
+            double stepsPerSecond = Double.parseDouble(baseline.getProperty(name + ".stepsPerSecond"));
+            if(result.stepsPerSecond < stepsPerSecond * (1 - threshold)) {
+                failures.add(String.format("%s: %.1f steps/s against %.1f", name,
+                                           result.stepsPerSecond, stepsPerSecond));
+            }
+            long bytesPerStep = Long.parseLong(baseline.getProperty(name + ".bytesPerStep"));
+            if(result.bytesPerStep > bytesPerStep * (1 + threshold)) {
+                failures.add(name + ": " + result.bytesPerStep + " bytes/step against " + bytesPerStep);
+            }
+            long gcMillis = Long.parseLong(baseline.getProperty(name + ".gcMillis"));
+            if(result.gcMillis > gcMillis * (1 + threshold) + GC_NOISE_MILLIS) {
+                failures.add(name + ": " + result.gcMillis + " ms of GC against " + gcMillis);
+            }
+            long peakHeapBytes = Long.parseLong(baseline.getProperty(name + ".peakHeapBytes"));
+            if(result.peakHeapBytes > peakHeapBytes * (1 + threshold)) {
+                failures.add(name + ": peak heap " + result.peakHeapBytes + " against " + peakHeapBytes);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Write results as the baseline.
+     * @param results The results to record.
+     * @param file The baseline file.
+     */
+    private static void saveBaseline(List<Result> results, String file) throws IOException
+    {
+        Properties baseline = new Properties();
+        for(Result result : results) {
+            baseline.setProperty(result.name + ".stepsPerSecond", String.format("%.1f", result.stepsPerSecond));
+            baseline.setProperty(result.name + ".bytesPerStep", Long.toString(result.bytesPerStep));
+            baseline.setProperty(result.name + ".gcMillis", Long.toString(result.gcMillis));
+            baseline.setProperty(result.name + ".peakHeapBytes", Long.toString(result.peakHeapBytes));
+            baseline.setProperty(result.name + ".hash", Long.toHexString(result.finalHash));
+        }
+        try(OutputStream out = new FileOutputStream(file)) {
+            baseline.store(out, "Savannah macro-benchmark baseline");
+        }
+    }
+
+    /**
+     * Read the baseline.
+     * @param file The baseline file.
+     * @return The baseline.
+     */
+    private static Properties loadBaseline(String file) throws IOException
+    {
+        Properties baseline = new Properties();
+        try(InputStream in = new FileInputStream(file)) {
+            baseline.load(in);
+        }
+        return baseline;
+    }
+
+    /**
+     * @return The total time spent collecting garbage, in milliseconds.
+     */
+    private static long getCollectionMillis()
+    {
+        long total = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of bytes allocated by this thread so far.
+     */
+    private static long getAllocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return The sum of the peak usage of the heap memory pools.
+     */
+    private static long getPeakHeapBytes()
+    {
+        long total = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * A fixed starting point and length of run.
+     */
+    private static class Scenario
+    {
+        // The name used in the baseline.
+        private final String name;
+        // The size of the field.
+        private final int depth;
+        private final int width;
+        // The number of steps measured.
+        private final int steps;
+        // The creation probabilities that differ from the defaults.
+        private final Map<Class<?>, Double> probabilities = new HashMap<>();
+        // The probability that an animal catches a disease, or null for the default.
+        private Double diseasedProbability;
+
+        private Scenario(String name, int depth, int width, int steps)
+        {
+            this.name = name;
+            this.depth = depth;
+            this.width = width;
+            this.steps = steps;
+        }
+    }
+
+    /**
+     * The measures of one scenario.
+     */
+    private static class Result
+    {
+        private final String name;
+        private double stepsPerSecond;
+        private long bytesPerStep;
+        private long gcMillis;
+        private long peakHeapBytes;
+        private long finalHash;
+
+        private Result(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%-15s %9.1f steps/s %12d bytes/step %6d ms GC %6d MB peak  hash %016x",
+                                 name, stepsPerSecond, bytesPerStep, gcMillis,
+                                 peakHeapBytes >> 20, finalHash);
+        }
+    }
+}
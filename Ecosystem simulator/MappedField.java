@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A field whose positions are stored off the heap, in a memory-mapped
+ * file, rather than in an array of references. The operating system
+ * pages regions of the field in and out as needed.
+ *
+ * Each position takes eight bytes: a species code, three spare bytes
+ * and the slot of its occupant in a table of actors. Only the occupancy
+ * of the grid is off the heap: the actors themselves, plants included,
+ * are still objects on the heap, held by the table and the simulator.
+ * This saves the array of references, and lets a grid be inspected by
+ * species without touching its actors, but the heap must still hold
+ * every actor, so a well populated grid is no larger than on an
+ * ordinary field; only sparsely populated grids can outgrow the heap.
+ * Positions are stored in the same tiled Morton order as an ordinary
+ * field.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class MappedField extends Field implements AutoCloseable
+{
+    // The number of bytes used for each position.
+    private static final int CELL_BYTES = 8;
+    // The offsets of each value within a position.
+    private static final int SPECIES_OFFSET = 0;
+    private static final int SLOT_OFFSET = 4;
+    // The number of positions in each mapped region of the file.
+    private static final int CELLS_PER_REGION = 1 << 26;
+    // The species that have their own codes; code 0 means empty.
+    private static final Class<?>[] SPECIES = {
+        Grass.class, PoisonIvy.class, Zebra.class, Gazelle.class,
+        Giraffe.class, Lion.class, Hyena.class
+    };
+    // The code used for any other occupant.
+    private static final byte OTHER_SPECIES = (byte) (SPECIES.length + 1);
+
+    // The file holding the positions.
+    private FileChannel channel;
+    // The mapped regions of the file.
+    private MappedByteBuffer[] regions;
+    // The occupants of the field, by slot.
+    private List<Object> occupants;
+    // The slots that are free for reuse.
+    private int[] freeSlots;
+    // The number of free slots.
+    private int freeCount;
+
+    /**
+     * Create a field of the given dimensions, stored in the given file.
+     * Any existing contents of the file are discarded.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param file The file in which to store the field.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public MappedField(int depth, int width, Path file) throws IOException
+    {
+        super(depth, width, false);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A truncated file reads back as zeros, i.e. an empty field.
+        channel.truncate(0);
+        long cells = getCapacity();
+        int regionCount = (int) ((cells + CELLS_PER_REGION - 1) / CELLS_PER_REGION);
+        regions = new MappedByteBuffer[regionCount];
+        for(int i = 0; i < regionCount; i++) {
+            long first = (long) i * CELLS_PER_REGION;
+            long size = Math.min(CELLS_PER_REGION, cells - first) * CELL_BYTES;
+            regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * CELL_BYTES, size);
+            regions[i].order(ByteOrder.nativeOrder());
+        }
+        occupants = new ArrayList<>();
+        freeSlots = new int[16];
+        freeCount = 0;
+    }
+
+    /**
+     * Empty the field.
+     */
+    public void clear()
+    {
+        for(MappedByteBuffer region : regions) {
+            for(int i = 0; i < region.capacity(); i += CELL_BYTES) {
+                region.putLong(i, 0);
+            }
+        }
+        occupants.clear();
+        freeCount = 0;
+        clearSummaries();
+    }
+
+    /**
+     * Clear the given location.
+     * @param location The location to clear.
+     */
+    public void clear(Location location)
+    {
+        int cell = cellIndex(location);
+        MappedByteBuffer region = regions[cell / CELLS_PER_REGION];
+        int offset = (cell % CELLS_PER_REGION) * CELL_BYTES;
+        if(region.get(offset + SPECIES_OFFSET) != 0) {
+            int slot = region.getInt(offset + SLOT_OFFSET);
+            Object occupant = occupants.get(slot);
+            freeSlot(slot);
+            region.put(offset + SPECIES_OFFSET, (byte) 0);
+            occupantChanged(location.getRow(), location.getCol(), occupant, null);
+        }
+    }
+
+    /**
+     * Place an animal at the given location.
+     * If there is already an animal at the location it will
+     * be lost.
+     * @param animal The animal to be placed.
+     * @param location Where to place the animal.
+     */
+    public void place(Object animal, Location location)
+    {
+        clear(location);
+        if(animal == null) {
+            return;
+        }
+        int cell = cellIndex(location);
+        MappedByteBuffer region = regions[cell / CELLS_PER_REGION];
+        int offset = (cell % CELLS_PER_REGION) * CELL_BYTES;
+        region.put(offset + SPECIES_OFFSET, speciesCode(animal.getClass()));
+        region.putInt(offset + SLOT_OFFSET, allocateSlot(animal));
+        occupantChanged(location.getRow(), location.getCol(), null, animal);
+    }
+
+    /**
+     * The table of occupants is shared by the whole field, so tiles
+     * cannot be filled in parallel.
+     * @return false.
+     */
+    public boolean isTileParallel()
+    {
+        return false;
+    }
+
+    /**
+     * Return the animal at the given location, if any.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The animal at the given location, or null if there is none.
+     */
+    public Object getObjectAt(int row, int col)
+    {
+        int cell = cellIndex(row, col);
+        MappedByteBuffer region = regions[cell / CELLS_PER_REGION];
+        int offset = (cell % CELLS_PER_REGION) * CELL_BYTES;
+        if(region.get(offset + SPECIES_OFFSET) == 0) {
+            return null;
+        }
+        return occupants.get(region.getInt(offset + SLOT_OFFSET));
+    }
+
+    /**
+     * Return the species code of the occupant of a location, without
+     * touching the occupant itself.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The species code, or 0 if the location is empty.
+     */
+    public int getSpeciesCodeAt(int row, int col)
+    {
+        int cell = cellIndex(row, col);
+        return regions[cell / CELLS_PER_REGION].get((cell % CELLS_PER_REGION) * CELL_BYTES + SPECIES_OFFSET);
+    }
+
+    /**
+     * Return the class of the species with the given code.
+     * @param code A species code.
+     * @return The species' class, or null if the code is not a known species.
+     */
+    public static Class<?> getSpecies(int code)
+    {
+        if(code < 1 || code > SPECIES.length) {
+            return null;
+        }
+        return SPECIES[code - 1];
+    }
+
+    /**
+     * Write any changes to the file and release it.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        for(MappedByteBuffer region : regions) {
+            region.force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Return the code for a species.
+     * @param species The species' class.
+     * @return The species code.
+     */
+    private static byte speciesCode(Class<?> species)
+    {
+        for(int i = 0; i < SPECIES.length; i++) {
+            if(SPECIES[i] == species) {
+                return (byte) (i + 1);
+            }
+        }
+        return OTHER_SPECIES;
+    }
+
+    /**
+     * Store an occupant in a free slot.
+     * @param occupant The occupant.
+     * @return The occupant's slot.
+     */
+    private int allocateSlot(Object occupant)
+    {
+        if(freeCount > 0) {
+            int slot = freeSlots[--freeCount];
+            occupants.set(slot, occupant);
+            return slot;
+        }
+        occupants.add(occupant);
+        return occupants.size() - 1;
+    }
+
+    /**
+     * Release a slot for reuse.
+     * @param slot The slot to be released.
+     */
+    private void freeSlot(int slot)
+    {
+        occupants.set(slot, null);
+        if(freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Steps groups of species at different rates. Plants change slowly
+ * compared to animals, so by default the plant group only acts on
+ * every fifth step while prey and predators act on every step. Ages
+ * are derived from the current step, so a group that skips steps
+ * still ages correctly when it next acts. An actor acting once for k
+ * steps is told so; a plant then breeds with the chance of breeding on
+ * any of the k steps, 1-(1-p)^k, so plants spread at statistically the
+ * same rate as when every actor acts on every step, though not
+ * identically, as the random numbers are drawn differently and the
+ * weather is only seen on the steps the plants act.
+ *
+ * Groups always act in the same order on a step (plants, then prey,
+ * then predators), each in the order its actors were added, and
+ * newborns of all groups join their groups once every group has
+ * acted. This keeps the order of actions consistent from step to
+ * step whatever the rates.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class MultiRateScheduler
+{
+    // The default number of steps between acts of the plant group.
+    private static final int DEFAULT_PLANT_RATE = 5;
+
+    // The species groups, in the order in which they act.
+    private List<SpeciesGroup> groups;
+
+    /**
+     * Create a scheduler with the default rates.
+     */
+    public MultiRateScheduler()
+    {
+        groups = new ArrayList<>();
+        groups.add(new SpeciesGroup(Plant.class, DEFAULT_PLANT_RATE));
+        groups.add(new SpeciesGroup(Prey.class, 1));
+        groups.add(new SpeciesGroup(Predator.class, 1));
+    }
+
+    /**
+     * Set the rate at which a group of species acts.
+     * @param kind The group: Plant, Prey or Predator.
+     * @param rate The number of steps between the group's acts.
+     */
+    public void setRate(Class<?> kind, int rate)
+    {
+        if(rate < 1) {
+            throw new IllegalArgumentException("Rate must be at least one: " + rate);
+        }
+        for(SpeciesGroup group : groups) {
+            if(group.kind == kind) {
+                group.rate = rate;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No species group for " + kind.getName());
+    }
+
+    /**
+     * Remove all actors from the scheduler.
+     */
+    public void clear()
+    {
+        for(SpeciesGroup group : groups) {
+            group.actors.clear();
+        }
+    }
+
+    /**
+     * Add actors to their species groups.
+     * @param actors The actors to be added.
+     */
+    public void addAll(List<Actor> actors)
+    {
+        for(Actor actor : actors) {
+            groupOf(actor).actors.add(actor);
+        }
+    }
+
+    /**
+     * Let every group that is due on this step act.
+     * @param step The current step.
+     * @param newActors A list to receive newly born actors.
+     * @param timer The timer through which the actors act.
+     */
+    public void runStep(int step, List<Actor> newActors, ActTimer timer)
+    {
+        for(SpeciesGroup group : groups) {
+            if(step % group.rate == 0) {
+                for(Iterator<Actor> it = group.actors.iterator(); it.hasNext();) {
+                    Actor actor = it.next();
+                    timer.act(actor, newActors, group.rate);
+                    if(!actor.isAlive()) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        addAll(newActors);
+    }
+
+    /**
+     * @return The number of actors held, including those that have
+     * died since their group last acted.
+     */
+    public int size()
+    {
+        int size = 0;
+        for(SpeciesGroup group : groups) {
+            size += group.actors.size();
+        }
+        return size;
+    }
+
+    /**
+     * Remove all living actors from the scheduler.
+     * @return The living actors, group by group.
+     */
+    public List<Actor> drain()
+    {
+        List<Actor> live = new ArrayList<>();
+        for(SpeciesGroup group : groups) {
+            for(Actor actor : group.actors) {
+                if(actor.isAlive()) {
+                    live.add(actor);
+                }
+            }
+        }
+        clear();
+        return live;
+    }
+
+    /**
+     * Find the group an actor belongs to.
+     * @param actor The actor.
+     * @return The actor's species group.
+     */
+    private SpeciesGroup groupOf(Actor actor)
+    {
+        for(SpeciesGroup group : groups) {
+            if(group.kind.isInstance(actor)) {
+                return group;
+            }
+        }
+        throw new IllegalArgumentException("No species group for " + actor.getClass().getName());
+    }
+
+    /**
+     * A group of species that act at the same rate.
+     */
+    private static class SpeciesGroup
+    {
+        // The class shared by all species in the group.
+        private final Class<?> kind;
+        // The number of steps between the group's acts.
+        private int rate;
+        // The actors in the group.
+        private final List<Actor> actors;
+
+        /**
+         * Create an empty group.
+         * @param kind The class shared by all species in the group.
+         * @param rate The number of steps between the group's acts.
+         */
+        public SpeciesGroup(Class<?> kind, int rate)
+        {
+            this.kind = kind;
+            this.rate = rate;
+            actors = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,807 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.DoubleConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs the simulation over many settings of its parameters, to find
+ * out which settings keep the ecosystem going, and stops each run as
+ * soon as it is known how it ends rather than running it to the full
+ * number of steps.
+ *
+ * Parameters are named after the constants they set, such as
+ * "Lion.BREEDING_AGE", "Disease.DISEASED_PROBABILITY" or
+ * "Simulator.LION_CREATION_PROBABILITY"; getParameterNames() lists
+ * them. The settings to run are either every combination of a list of
+ * values for each parameter, or a random sample from a range for each.
+ *
+ * A run stops early when one of the stop conditions holds at the end
+ * of a step:
+ * <ul>
+ * <li>"not-viable": the simulation is no longer viable.</li>
+ * <li>"predators-extinct": every predator species has died out.</li>
+ * <li>"extinct:Species": the named species has died out.</li>
+ * <li>"steady-state": the populations have settled, as judged by a
+ * SteadyStateDetector with its default windows.</li>
+ * </ul>
+ *
+ * The clock, the weather, the disease and the random number generator
+ * are shared by the whole simulation, so runs cannot overlap in one
+ * JVM. To run in parallel the sweep starts worker JVMs, each running
+ * one setting at a time and taking the next as soon as it is done;
+ * with one worker the runs are made in this JVM instead.
+ *
+ * The runs can be given a warm start: each first runs a number of
+ * burn-in steps, which are taken from a WarmStartCache when a run with
+ * the same setting has been made before. The stop conditions are only
+ * checked after the burn-in. Alternatively, every run can carry on
+ * from a state saved part way through another simulation, as the
+ * branches of a SimulationFork do.
+ *
+ * The parameter "Randomizer.SEED" reseeds the random numbers once a
+ * run has started, after any burn-in or saved state, so that runs with
+ * the same start can follow independent streams.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class ParameterSweep
+{
+    // The stop conditions understood.
+    public static final String NOT_VIABLE = "not-viable";
+    public static final String PREDATORS_EXTINCT = "predators-extinct";
+    public static final String EXTINCT = "extinct:";
+    public static final String STEADY_STATE = "steady-state";
+    // The reason given for a run that reached its last step.
+    public static final String COMPLETED = "completed";
+    // The parameter that reseeds the random numbers once a run has started.
+    public static final String SEED = "Randomizer.SEED";
+
+    // The argument that makes main run as a worker.
+    private static final String WORKER = "worker";
+    // The argument given to a worker for no warm start or saved state.
+    private static final String NONE = "-";
+    // The parameters that can be swept, by name.
+    private static final Map<String, DoubleConsumer> SETTERS = createSetters();
+
+    // The size of the field.
+    private int depth, width;
+    // The most steps in a run.
+    private int steps;
+    // The seed every run starts from.
+    private long seed;
+    // The values of each parameter, for a grid.
+    private Map<String, double[]> values;
+    // The lowest and highest value of each parameter, for a sample.
+    private Map<String, double[]> ranges;
+    // The conditions that stop a run early.
+    private List<String> stopConditions;
+    // The directory of the warm starts, or null for none.
+    private Path warmStartDirectory;
+    // The most bytes the warm starts may take.
+    private long warmStartBytes;
+    // The number of burn-in steps.
+    private int burnIn;
+    // The file of the saved state every run starts from, or null.
+    private Path startState;
+
+    /**
+     * Create a sweep with no parameters.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param steps The most steps in a run.
+     * @param seed The seed every run starts from.
+     */
+    public ParameterSweep(int depth, int width, int steps, long seed)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.seed = seed;
+        values = new LinkedHashMap<>();
+        ranges = new LinkedHashMap<>();
+        stopConditions = new ArrayList<>();
+    }
+
+    /**
+     * Sweep a small default grid: the lions' breeding age against the
+     * probability of disease, stopping when the predators die out.
+     * Run with "worker" to serve as a worker for another sweep.
+     * @param args The number of workers, 2 by default.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length > 0 && args[0].equals(WORKER)) {
+            serveAsWorker(args);
+            return;
+        }
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        ParameterSweep sweep = new ParameterSweep(150, 210, 4000, 1111);
+        sweep.addValues("Lion.BREEDING_AGE", 40, 85, 130);
+        sweep.addValues("Disease.DISEASED_PROBABILITY", 0.001, 0.01, 0.05);
+        sweep.addStopCondition(PREDATORS_EXTINCT);
+        sweep.addStopCondition(NOT_VIABLE);
+        for(Result result : sweep.run(sweep.grid(), workers)) {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * @return The names of the parameters that can be swept.
+     */
+    public static List<String> getParameterNames()
+    {
+        return new ArrayList<>(SETTERS.keySet());
+    }
+
+    /**
+     * Give the values a parameter takes in the grid.
+     * @param parameter The parameter's name.
+     * @param parameterValues The values.
+     */
+    public void addValues(String parameter, double... parameterValues)
+    {
+        checkParameter(parameter);
+        values.put(parameter, parameterValues.clone());
+    }
+
+    /**
+     * Give the range a parameter is sampled from.
+     * @param parameter The parameter's name.
+     * @param low The lowest value.
+     * @param high The highest value.
+     */
+    public void addRange(String parameter, double low, double high)
+    {
+        checkParameter(parameter);
+        ranges.put(parameter, new double[] {low, high});
+    }
+
+    /**
+     * Add a condition that stops a run early.
+     * @param condition NOT_VIABLE, PREDATORS_EXTINCT, STEADY_STATE, or
+     * EXTINCT followed by a species' name.
+     */
+    public void addStopCondition(String condition)
+    {
+        // Check the condition now rather than in a worker.
+        new StopCheck(List.of(condition));
+        stopConditions.add(condition);
+    }
+
+    /**
+     * Give every run a warm start from a cache of burned-in states.
+     * @param directory The directory of the cache, which may be shared
+     * with other sweeps.
+     * @param maxBytes The most bytes the cached states may take.
+     * @param burnInSteps The number of steps run before the stop
+     * conditions are checked.
+     */
+    public void setWarmStart(Path directory, long maxBytes, int burnInSteps)
+    {
+        warmStartDirectory = directory;
+        warmStartBytes = maxBytes;
+        burnIn = burnInSteps;
+    }
+
+    /**
+     * Start every run from a saved state rather than a newly populated
+     * field, in which case the warm start is not used, the steps are
+     * counted from the saved step, and creation probabilities cannot
+     * be set.
+     * @param file A file written by SimulationFork, for a field of the
+     * sweep's size.
+     */
+    public void setStartState(Path file)
+    {
+        startState = file;
+    }
+
+    /**
+     * @return Every combination of the values given to the parameters.
+     */
+    public List<Map<String, Double>> grid()
+    {
+        List<Map<String, Double>> settings = new ArrayList<>();
+        settings.add(new LinkedHashMap<>());
+        for(Map.Entry<String, double[]> entry : values.entrySet()) {
+            List<Map<String, Double>> extended = new ArrayList<>();
+            for(Map<String, Double> setting : settings) {
+                for(double value : entry.getValue()) {
+                    Map<String, Double> next = new LinkedHashMap<>(setting);
+                    next.put(entry.getKey(), value);
+                    extended.add(next);
+                }
+            }
+            settings = extended;
+        }
+        return settings;
+    }
+
+    /**
+     * Draw settings at random from the ranges given to the parameters.
+     * Parameters that are whole numbers are rounded.
+     * @param count The number of settings.
+     * @param sampleSeed The seed of the sample.
+     * @return The settings.
+     */
+    public List<Map<String, Double>> sample(int count, long sampleSeed)
+    {
+        Random random = new Random(sampleSeed);
+        List<Map<String, Double>> settings = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            Map<String, Double> setting = new LinkedHashMap<>();
+            for(Map.Entry<String, double[]> entry : ranges.entrySet()) {
+                double[] range = entry.getValue();
+                double value = range[0] + random.nextDouble() * (range[1] - range[0]);
+                if(entry.getKey().endsWith("_AGE") || entry.getKey().equals(SEED)) {
+                    value = Math.round(value);
+                }
+                setting.put(entry.getKey(), value);
+            }
+            settings.add(setting);
+        }
+        return settings;
+    }
+
+    /**
+     * Run the simulation with each setting.
+     * @param settings The settings, each giving the value of some
+     * parameters; the others keep their defaults.
+     * @param workers The number of runs at once. With more than one,
+     * each is made in a worker JVM.
+     * @return The result of each run, in the order of the settings.
+     * @throws IOException If a worker fails.
+     */
+    public List<Result> run(List<Map<String, Double>> settings, int workers) throws IOException
+    {
+        Result[] results = new Result[settings.size()];
+        if(workers <= 1) {
+            StopCheck check = new StopCheck(stopConditions);
+            WarmStartCache cache = warmStartDirectory == null ? null
+                : new WarmStartCache(warmStartDirectory, warmStartBytes);
+            for(int i = 0; i < results.length; i++) {
+                results[i] = runSetting(settings.get(i), depth, width, steps, seed, cache, burnIn,
+                                        startState, check);
+            }
+            return List.of(results);
+        }
+
+        ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for(int i = 0; i < results.length; i++) {
+            queue.add(i);
+        }
+        List<Thread> threads = new ArrayList<>();
+        IOException[] failure = new IOException[1];
+        for(int w = 0; w < Math.min(workers, results.length); w++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    feedWorker(queue, settings, results);
+                }
+                catch(IOException e) {
+                    synchronized(failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "sweep-worker-" + w);
+            thread.start();
+            threads.add(thread);
+        }
+        for(Thread thread : threads) {
+            try {
+                thread.join();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sweeping", e);
+            }
+        }
+        if(failure[0] != null) {
+            throw failure[0];
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Start a worker JVM and give it settings from the queue, one at a
+     * time, until the queue is empty.
+     * @param queue The indices of the settings not yet taken.
+     * @param settings The settings.
+     * @param results Where the results are put.
+     * @throws IOException If the worker fails.
+     */
+    private void feedWorker(ConcurrentLinkedQueue<Integer> queue, List<Map<String, Double>> settings,
+                            Result[] results) throws IOException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ParameterSweep.class.getName());
+        command.add(WORKER);
+        command.add(Integer.toString(depth));
+        command.add(Integer.toString(width));
+        command.add(Integer.toString(steps));
+        command.add(Long.toString(seed));
+        command.add(warmStartDirectory == null ? NONE : warmStartDirectory.toString());
+        command.add(Long.toString(warmStartBytes));
+        command.add(Integer.toString(burnIn));
+        command.add(startState == null ? NONE : startState.toString());
+        command.addAll(stopConditions);
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try(PrintWriter toWorker = new PrintWriter(process.getOutputStream(), true, StandardCharsets.UTF_8);
+            BufferedReader fromWorker = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            Integer next = queue.poll();
+            while(next != null) {
+                toWorker.println(formatSetting(settings.get(next)));
+                String line = fromWorker.readLine();
+                if(line == null) {
+                    throw new IOException("A sweep worker ended unexpectedly");
+                }
+                results[next] = Result.parse(settings.get(next), line);
+                next = queue.poll();
+            }
+        }
+        finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * Run settings read from the standard input, one per line, writing
+     * the result of each to the standard output.
+     * @param args "worker", then the depth, width, steps and seed, the
+     * warm start directory or "-", its size and the burn-in steps, the
+     * saved state or "-", then the stop conditions.
+     * @throws IOException If the input cannot be read.
+     */
+    private static void serveAsWorker(String[] args) throws IOException
+    {
+        int depth = Integer.parseInt(args[1]);
+        int width = Integer.parseInt(args[2]);
+        int steps = Integer.parseInt(args[3]);
+        long seed = Long.parseLong(args[4]);
+        WarmStartCache cache = args[5].equals(NONE) ? null
+            : new WarmStartCache(Paths.get(args[5]), Long.parseLong(args[6]));
+        int burnIn = Integer.parseInt(args[7]);
+        Path startState = args[8].equals(NONE) ? null : Paths.get(args[8]);
+        StopCheck check = new StopCheck(List.of(args).subList(9, args.length));
+        // Only results go to the sweep; anything else printed goes to the errors.
+        PrintStream results = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line = in.readLine();
+        while(line != null) {
+            Result result = runSetting(parseSetting(line), depth, width, steps, seed, cache, burnIn,
+                                       startState, check);
+            results.println(result.format());
+            line = in.readLine();
+        }
+    }
+
+    /**
+     * Run the simulation with one setting of the parameters.
+     * @param setting The value of each parameter set.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param steps The most steps, counted from the saved step when
+     * starting from a saved state.
+     * @param seed The seed to start from.
+     * @param cache The cache of warm starts, or null for none.
+     * @param burnIn The number of steps taken from the cache.
+     * @param startState The file of a saved state to start from, or null.
+     * @param check The conditions that stop the run early.
+     * @return The result of the run.
+     */
+    private static Result runSetting(Map<String, Double> setting, int depth, int width, int steps,
+                                     long seed, WarmStartCache cache, int burnIn, Path startState,
+                                     StopCheck check)
+    {
+        Field field = new Field(depth, width);
+        // The pyramid keeps the populations up to date for the checks.
+        field.setPyramidEnabled(true);
+        Simulator simulator;
+        int step = 0;
+        int lastStep = steps;
+        if(startState != null) {
+            try {
+                simulator = openState(startState, field, setting);
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException("Cannot load " + startState, e);
+            }
+            step = Simulator.getStep();
+            lastStep = step + steps;
+        }
+        else {
+            Map<Class<?>, Double> probabilities = new HashMap<>();
+            Map<String, Double> parameters = applySetting(setting, probabilities);
+            if(cache != null) {
+                step = Math.min(burnIn, steps);
+                simulator = cache.start(field, seed, step, probabilities, parameters);
+            }
+            else {
+                Randomizer.reset(seed);
+                simulator = new Simulator(field, false, probabilities);
+            }
+            reseed(setting);
+        }
+        check.start();
+        String reason = COMPLETED;
+        while(step < lastStep) {
+            simulator.simulateOneStep();
+            step++;
+            String stop = check.check(simulator, step);
+            if(stop != null) {
+                reason = stop;
+                break;
+            }
+        }
+        Result result = new Result(setting, step, reason, simulator.getStateHash());
+        resetParameters();
+        return result;
+    }
+
+    /**
+     * Load a saved state into a new simulation and set the parameters
+     * of a setting, which stay set for the run.
+     * @param file A file written by SimulationFork.
+     * @param field An empty field of the saved state's size.
+     * @param setting The value of each parameter set, which may not
+     * include creation probabilities.
+     * @return The simulation, without a view, at the saved step.
+     * @throws IOException If the state cannot be read.
+     */
+    static Simulator openState(Path file, Field field, Map<String, Double> setting) throws IOException
+    {
+        Map<Class<?>, Double> probabilities = new HashMap<>();
+        applySetting(setting, probabilities);
+        if(!probabilities.isEmpty()) {
+            throw new IllegalArgumentException("A saved state is already populated");
+        }
+        Simulator simulator = new Simulator(field, false);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            simulator.loadState(in);
+        }
+        reseed(setting);
+        return simulator;
+    }
+
+    /**
+     * Put every parameter back to its default, then set those of a
+     * setting, apart from its creation probabilities and seed.
+     * @param setting The value of each parameter set.
+     * @param probabilities Where the creation probabilities are put.
+     * @return The other parameters set, apart from the seed.
+     */
+    private static Map<String, Double> applySetting(Map<String, Double> setting,
+                                                    Map<Class<?>, Double> probabilities)
+    {
+        resetParameters();
+        Map<String, Double> parameters = new HashMap<>();
+        for(Map.Entry<String, Double> entry : setting.entrySet()) {
+            Class<?> species = getCreatedSpecies(entry.getKey());
+            if(species != null) {
+                probabilities.put(species, entry.getValue());
+            }
+            else if(!entry.getKey().equals(SEED)) {
+                SETTERS.get(entry.getKey()).accept(entry.getValue());
+                parameters.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Reseed the random numbers if a setting gives a seed.
+     * @param setting The value of each parameter set.
+     */
+    private static void reseed(Map<String, Double> setting)
+    {
+        Double runSeed = setting.get(SEED);
+        if(runSeed != null) {
+            Randomizer.reset(runSeed.longValue());
+        }
+    }
+
+    /**
+     * Put every parameter back to its default.
+     */
+    private static void resetParameters()
+    {
+        Lion.resetBreeding();
+        Hyena.resetBreeding();
+        Zebra.resetBreeding();
+        Gazelle.resetBreeding();
+        Giraffe.resetBreeding();
+        Disease.resetDiseasedProbability();
+    }
+
+    /**
+     * @return The setter of each parameter, by name.
+     */
+    private static Map<String, DoubleConsumer> createSetters()
+    {
+        Map<String, DoubleConsumer> setters = new LinkedHashMap<>();
+        setters.put("Lion.BREEDING_AGE", value -> Lion.setBreedingAge((int) Math.round(value)));
+        setters.put("Lion.BREEDING_PROBABILITY", Lion::setBreedingProbability);
+        setters.put("Hyena.BREEDING_AGE", value -> Hyena.setBreedingAge((int) Math.round(value)));
+        setters.put("Hyena.BREEDING_PROBABILITY", Hyena::setBreedingProbability);
+        setters.put("Zebra.BREEDING_AGE", value -> Zebra.setBreedingAge((int) Math.round(value)));
+        setters.put("Zebra.BREEDING_PROBABILITY", Zebra::setBreedingProbability);
+        setters.put("Gazelle.BREEDING_AGE", value -> Gazelle.setBreedingAge((int) Math.round(value)));
+        setters.put("Gazelle.BREEDING_PROBABILITY", Gazelle::setBreedingProbability);
+        setters.put("Giraffe.BREEDING_AGE", value -> Giraffe.setBreedingAge((int) Math.round(value)));
+        setters.put("Giraffe.BREEDING_PROBABILITY", Giraffe::setBreedingProbability);
+        setters.put("Disease.DISEASED_PROBABILITY", Disease::setDiseasedProbability);
+        // The seed is applied once the run has started.
+        setters.put(SEED, null);
+        // Creation probabilities are given to the simulator, not set.
+        for(Class<?> species : Simulator.getSpeciesColors().keySet()) {
+            setters.put(creationParameter(species), null);
+        }
+        return setters;
+    }
+
+    /**
+     * @param species A species.
+     * @return The name of the parameter for its creation probability.
+     */
+    private static String creationParameter(Class<?> species)
+    {
+        return "Simulator." + species.getSimpleName().toUpperCase() + "_CREATION_PROBABILITY";
+    }
+
+    /**
+     * @param parameter The name of a parameter.
+     * @return The species whose creation probability it is, or null.
+     */
+    private static Class<?> getCreatedSpecies(String parameter)
+    {
+        for(Class<?> species : Simulator.getSpeciesColors().keySet()) {
+            if(creationParameter(species).equals(parameter)) {
+                return species;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that a parameter can be swept.
+     * @param parameter The parameter's name.
+     * @throws IllegalArgumentException If it cannot.
+     */
+    static void checkParameter(String parameter)
+    {
+        if(!SETTERS.containsKey(parameter)) {
+            throw new IllegalArgumentException("Unknown parameter " + parameter);
+        }
+    }
+
+    /**
+     * @param setting A setting of the parameters.
+     * @return The setting as a line of text, "name=value" separated by spaces.
+     */
+    private static String formatSetting(Map<String, Double> setting)
+    {
+        StringBuilder line = new StringBuilder();
+        for(Map.Entry<String, Double> entry : setting.entrySet()) {
+            if(line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return line.toString();
+    }
+
+    /**
+     * @param line A setting as written by formatSetting.
+     * @return The setting.
+     */
+    private static Map<String, Double> parseSetting(String line)
+    {
+        Map<String, Double> setting = new LinkedHashMap<>();
+        for(String pair : line.trim().split(" ")) {
+            if(!pair.isEmpty()) {
+                int equals = pair.indexOf('=');
+                String parameter = pair.substring(0, equals);
+                checkParameter(parameter);
+                setting.put(parameter, Double.parseDouble(pair.substring(equals + 1)));
+            }
+        }
+        return setting;
+    }
+
+    /**
+     * The conditions that stop a run early.
+     */
+    private static class StopCheck
+    {
+        // The conditions, as given.
+        private final List<String> conditions;
+        // The species each EXTINCT condition names, by condition.
+        private final Map<String, Class<?>> extinctSpecies;
+        // The detector for STEADY_STATE, or null if not checked.
+        private final SteadyStateDetector steadyState;
+
+        private StopCheck(List<String> conditions)
+        {
+            this.conditions = conditions;
+            extinctSpecies = new HashMap<>();
+            for(String condition : conditions) {
+                if(condition.startsWith(EXTINCT)) {
+                    String name = condition.substring(EXTINCT.length());
+                    for(Class<?> species : Simulator.getSpeciesColors().keySet()) {
+                        if(species.getSimpleName().equals(name)) {
+                            extinctSpecies.put(condition, species);
+                        }
+                    }
+                    if(!extinctSpecies.containsKey(condition)) {
+                        throw new IllegalArgumentException("Unknown species " + name);
+                    }
+                }
+                else if(!condition.equals(NOT_VIABLE) && !condition.equals(PREDATORS_EXTINCT)
+                        && !condition.equals(STEADY_STATE)) {
+                    throw new IllegalArgumentException("Unknown stop condition " + condition);
+                }
+            }
+            steadyState = conditions.contains(STEADY_STATE) ? new SteadyStateDetector() : null;
+        }
+
+        /**
+         * Get ready to check a new run.
+         */
+        private void start()
+        {
+            if(steadyState != null) {
+                steadyState.reset();
+            }
+        }
+
+        /**
+         * Check the conditions at the end of a step.
+         * @param simulator The simulator, with its field's pyramid enabled.
+         * @param step The step.
+         * @return The first condition that holds, or null if none does.
+         */
+        private String check(Simulator simulator, int step)
+        {
+            FieldPyramid pyramid = simulator.getField().getPyramid();
+            // The detector records every step, whichever condition holds.
+            boolean steady = steadyState != null && steadyState.record(simulator.getField(), step);
+            for(String condition : conditions) {
+                if(condition.equals(STEADY_STATE)) {
+                    if(steady) {
+                        return condition;
+                    }
+                }
+                else if(condition.equals(NOT_VIABLE)) {
+                    if(!simulator.isViable()) {
+                        return condition;
+                    }
+                }
+                else if(condition.equals(PREDATORS_EXTINCT)) {
+                    int predators = 0;
+                    for(Class<?> species : Simulator.getSpeciesColors().keySet()) {
+                        if(Predator.class.isAssignableFrom(species)) {
+                            predators += pyramid.getTotal(species);
+                        }
+                    }
+                    if(predators == 0) {
+                        return condition;
+                    }
+                }
+                else if(pyramid.getTotal(extinctSpecies.get(condition)) == 0) {
+                    return condition;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The outcome of a run with one setting.
+     */
+    public static class Result
+    {
+        // The setting run.
+        private final Map<String, Double> setting;
+        // The step the run ended on.
+        private final int steps;
+        // The condition that stopped the run, or COMPLETED.
+        private final String reason;
+        // The hash of the final state.
+        private final long finalHash;
+
+        private Result(Map<String, Double> setting, int steps, String reason, long finalHash)
+        {
+            this.setting = setting;
+            this.steps = steps;
+            this.reason = reason;
+            this.finalHash = finalHash;
+        }
+
+        /**
+         * @return The setting run.
+         */
+        public Map<String, Double> getSetting()
+        {
+            return setting;
+        }
+
+        /**
+         * @return The step the run ended on, counted from the start
+         * of the simulation.
+         */
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        /**
+         * @return The condition that stopped the run, or COMPLETED if
+         * it ran for every step.
+         */
+        public String getReason()
+        {
+            return reason;
+        }
+
+        /**
+         * @return The hash of the final state.
+         */
+        public long getFinalHash()
+        {
+            return finalHash;
+        }
+
+        /**
+         * @return The result as a line sent by a worker.
+         */
+        private String format()
+        {
+            return steps + " " + reason + " " + Long.toHexString(finalHash);
+        }
+
+        /**
+         * Read a result sent by a worker.
+         * @param setting The setting run.
+         * @param line The line sent.
+         * @return The result.
+         */
+        private static Result parse(Map<String, Double> setting, String line)
+        {
+            String[] parts = line.split(" ");
+            return new Result(setting, Integer.parseInt(parts[0]), parts[1], Long.parseUnsignedLong(parts[2], 16));
+        }
+
+        @Override
+        public String toString()
+        {
+            return formatSetting(setting) + ": " + reason + " after " + steps + " steps, hash "
+                + Long.toHexString(finalHash);
+        }
+    }
+}
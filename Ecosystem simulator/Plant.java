@@ -9,9 +9,9 @@ import java.util.*;
  */
 public abstract class Plant extends Actor
 {
-    
-    // A shared random number.
-    private static final Random rand = Randomizer.getRandom();
+    // The number of steps the current act stands for.
+    private int stepsPerAct = 1;
+
     /**
      * Create a new plant at location in field.
      * 
@@ -22,38 +22,64 @@ public abstract class Plant extends Actor
     public Plant(boolean randomAge,Field field, Location location)
     {
         super(field, location);
-        age = 0;
         if(randomAge) {
-            age = rand.nextInt(getMaxAge());
+            setAge(Randomizer.getRandom().nextInt(getMaxAge()));
         }
     }
     
     /**
      * This is what the Plant does most of the time - it
-     * disperses. Sometimes it will breed or die of old age.
+     * disperses. Sometimes it will breed.
      * @param newPlants A list to return newly born plants.
      */
     public void act(List<Actor> newPlants)
     {
-        incrementAge();
         if(isAlive()) {
             giveBirth(newPlants);
         }
     }
+
+    /**
+     * Act once for a number of steps. The plant breeds with the chance
+     * of breeding on any one of them, so that plants acting less often
+     * spread at statistically the same rate, though not on the same
+     * steps or with the same random numbers.
+     * @param newPlants A list to return newly born plants.
+     * @param steps The number of steps the act stands for.
+     */
+    protected void act(List<Actor> newPlants, int steps)
+    {
+        stepsPerAct = steps;
+        act(newPlants);
+        stepsPerAct = 1;
+    }
     
     /**
-     * Increase the age.
-     * This could result in the plants death.
+     * Gets the next step on which this plant has something to do.
+     * A plant only needs to act once it has reached breeding age
+     * and the weather allows it to breed.
+     * @param step The current step.
+     * @return The step of the plant's next event.
      */
-    protected void incrementAge()
+    protected int getNextEventStep(int step)
     {
-        age++;
-        String myName = this.getClass().getName();
-        if(myName.equals("PosionIvy") && age > getMaxAge()) {
-            setDead();
+        int age = getAge();
+        if(age < getBreedingAge()) {
+            return step + getBreedingAge() - age;
         }
+        if(isBreedingWeather()) {
+            return step + 1;
+        }
+        return Simulator.nextWeatherStep(step);
     }
-    
+
+    /**
+     * Determines whether the current weather allows this plant
+     * to breed.
+     * @return true if the plant can breed in the current weather.
+     */
+    protected abstract boolean isBreedingWeather();
+
     /**
      * Gets the maximum age this plant can live to.
      * @return The max age.
@@ -66,7 +92,7 @@ public abstract class Plant extends Actor
      */
     protected boolean canBreed()
     {
-        return age >= getBreedingAge();
+        return getAge() >= getBreedingAge();
     }
     
     /**
@@ -77,8 +103,8 @@ public abstract class Plant extends Actor
     protected int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= getBreedingProbability()) {
-            births = rand.nextInt(getMaxLitterSize()) + 1;
+        if(canBreed() && Randomizer.getRandom().nextDouble() <= getActBreedingProbability()) {
+            births = Randomizer.getRandom().nextInt(getMaxLitterSize()) + 1;
         }
         return births;
     }
@@ -89,6 +115,20 @@ public abstract class Plant extends Actor
      * @return The maximum litter size
      */
     protected abstract int getMaxLitterSize();
+
+    /**
+     * Gets the probability of breeding in the current act, which is
+     * that of breeding on at least one of the steps it stands for.
+     * @return The breeding probability for this act.
+     */
+    private double getActBreedingProbability()
+    {
+        double probability = getBreedingProbability();
+        if(stepsPerAct == 1) {
+            return probability;
+        }
+        return 1 - Math.pow(1 - probability, stepsPerAct);
+    }
     
     /**
      * Generates a random breeding probability. 
@@ -22,9 +22,6 @@ public class PoisonIvy extends Plant
     // The food value gained when this plant is consumed.
     private static final int myFoodValue = -5;
 
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-
     /**
      * Create a new Poison Ivy. A Poison Ivy may be created with age
      * zero (a new born) or with a random age.
@@ -57,8 +54,7 @@ public class PoisonIvy extends Plant
         // Get a list of adjacent free locations.
         Field field = getField();
         List<Location> free = field.getFreeAdjacentLocations(getLocation());
-        String curWeather = Weather.getWeather();
-        if(curWeather != null && (curWeather.equals("wind") )){
+        if(isBreedingWeather()){
             int births = breed();
             for(int b = 0; b < births && free.size() > 0; b++) {
                 Location loc = free.remove(0);
@@ -68,6 +64,15 @@ public class PoisonIvy extends Plant
         }
     }
 
+    /**
+     * Poison Ivy breeds in the wind.
+     * @return true if the current weather is wind.
+     */
+    protected boolean isBreedingWeather(){
+        String curWeather = Weather.getWeather();
+        return curWeather != null && curWeather.equals("wind");
+    }
+
     /**
      * Generates a random breeding probability if the
      * weather is misty.
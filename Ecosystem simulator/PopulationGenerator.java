@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Populates a field quickly, for grids that are too large to be
+ * populated position by position from the shared random generator.
+ *
+ * The field is filled tile by tile, with the tiles shared out between
+ * threads. Each tile has its own random generator, seeded from the
+ * tile's number, so the field comes out the same however the tiles
+ * are shared out. Each position takes a single draw from an alias
+ * table, which picks either one species or none, in place of a draw
+ * for each species.
+ *
+ * Species are added in the order in which they would be placed one
+ * after another in a position, each replacing the last. The table is
+ * built so that each species ends up in a position as often as it
+ * would when they are placed that way.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class PopulationGenerator
+{
+    // The probability of placing each species in a position.
+    private List<Double> probabilities;
+    // The ways of creating each species.
+    private List<BiFunction<Field, Location, Actor>> factories;
+    // The alias table: for each column, the probability of keeping it,
+    // and the outcome used otherwise. Outcome 0 means an empty position
+    // and outcome i means species i - 1.
+    private double[] keep;
+    private int[] alias;
+
+    /**
+     * Create a generator with no species.
+     */
+    public PopulationGenerator()
+    {
+        probabilities = new ArrayList<>();
+        factories = new ArrayList<>();
+    }
+
+    /**
+     * Add a species, after those that it may replace in a position.
+     * @param probability The probability of placing it in a position.
+     * @param factory Creates a member of the species with a random age.
+     */
+    public void addSpecies(double probability, BiFunction<Field, Location, Actor> factory)
+    {
+        probabilities.add(probability);
+        factories.add(factory);
+        keep = null;
+    }
+
+    /**
+     * Populate a field, which must be empty.
+     * @param field The field to populate.
+     * @param seed The seed from which each tile's generator is made.
+     * @return The actors created, tile by tile.
+     */
+    public List<Actor> populate(Field field, long seed)
+    {
+        if(keep == null) {
+            buildTable();
+        }
+        int tileCount = field.getTilesWide() * field.getTilesDeep();
+        IntStream tiles = IntStream.range(0, tileCount);
+        if(field.isTileParallel()) {
+            tiles = tiles.parallel();
+        }
+        List<List<Actor>> tileActors;
+        field.beginBulkLoad();
+        try {
+            tileActors = tiles.mapToObj(tile -> populateTile(field, tile, seed))
+                              .collect(Collectors.toList());
+        }
+        finally {
+            field.endBulkLoad();
+        }
+
+        List<Actor> actors = new ArrayList<>();
+        for(List<Actor> list : tileActors) {
+            actors.addAll(list);
+        }
+        return actors;
+    }
+
+    /**
+     * Populate one tile of a field.
+     * @param field The field to populate.
+     * @param tile The number of the tile, row by row.
+     * @param seed The seed from which the tile's generator is made.
+     * @return The actors created.
+     */
+    private List<Actor> populateTile(Field field, int tile, long seed)
+    {
+        Random random = new Random(Field.mix(seed + tile));
+        // The actors' constructors draw their ages from the tile's generator.
+        Randomizer.setThreadRandom(random);
+        try {
+            int size = Field.getTileSize();
+            int top = (tile / field.getTilesWide()) * size;
+            int left = (tile % field.getTilesWide()) * size;
+            int bottom = Math.min(top + size, field.getDepth());
+            int right = Math.min(left + size, field.getWidth());
+            List<Actor> actors = new ArrayList<>();
+            for(int row = top; row < bottom; row++) {
+                for(int col = left; col < right; col++) {
+                    int outcome = draw(random);
+                    if(outcome > 0) {
+                        actors.add(factories.get(outcome - 1).apply(field, new Location(row, col)));
+                    }
+                }
+            }
+            return actors;
+        }
+        finally {
+            Randomizer.setThreadRandom(null);
+        }
+    }
+
+    /**
+     * Draw the outcome for one position from the alias table. A
+     * single random number picks both the column and whether to keep it.
+     * @param random The generator to draw from.
+     * @return 0 for an empty position, or i for species i - 1.
+     */
+    private int draw(Random random)
+    {
+        double scaled = random.nextDouble() * keep.length;
+        int column = (int) scaled;
+        return scaled - column < keep[column] ? column : alias[column];
+    }
+
+    /**
+     * Build the alias table from the species' probabilities, by
+     * Vose's method.
+     */
+    private void buildTable()
+    {
+        int outcomes = probabilities.size() + 1;
+        // The probability of each outcome: a species is left in a
+        // position if it is placed and none of the later ones are.
+        double[] weights = new double[outcomes];
+        double noneLater = 1;
+        for(int i = outcomes - 1; i >= 1; i--) {
+            double probability = probabilities.get(i - 1);
+            weights[i] = probability * noneLater;
+            noneLater *= 1 - probability;
+        }
+        weights[0] = noneLater;
+
+        keep = new double[outcomes];
+        alias = new int[outcomes];
+        int[] small = new int[outcomes];
+        int[] large = new int[outcomes];
+        int smallCount = 0;
+        int largeCount = 0;
+        double[] scaled = new double[outcomes];
+        for(int i = 0; i < outcomes; i++) {
+            scaled[i] = weights[i] * outcomes;
+            if(scaled[i] < 1) {
+                small[smallCount++] = i;
+            }
+            else {
+                large[largeCount++] = i;
+            }
+        }
+        while(smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            keep[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if(scaled[more] < 1) {
+                small[smallCount++] = more;
+            }
+            else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left has a probability of one, up to rounding.
+        while(largeCount > 0) {
+            keep[large[--largeCount]] = 1;
+        }
+        while(smallCount > 0) {
+            keep[small[--smallCount]] = 1;
+        }
+    }
+}
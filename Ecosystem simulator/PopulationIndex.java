@@ -0,0 +1,102 @@
+import java.util.HashMap;
+
+/**
+ * An index of how many of each species there are in any rectangle of
+ * a field. For each species the index keeps a two-dimensional Fenwick
+ * tree of counts, so that both updating a position and counting a
+ * rectangle take O(log(depth) * log(width)) time. The field keeps the
+ * index up to date as actors are placed and cleared.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class PopulationIndex
+{
+    // The depth and width of the field.
+    private int depth, width;
+    // A Fenwick tree of counts for each species found so far.
+    private HashMap<Class<?>, int[]> trees;
+
+    /**
+     * Create an empty index for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public PopulationIndex(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        trees = new HashMap<>();
+    }
+
+    /**
+     * Remove all counts from the index.
+     */
+    public void clear()
+    {
+        trees.clear();
+    }
+
+    /**
+     * Add to the count of a species at a position.
+     * @param species The species' class.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @param delta The amount to add to the count.
+     */
+    public void update(Class<?> species, int row, int col, int delta)
+    {
+        int[] tree = trees.get(species);
+        if(tree == null) {
+            tree = new int[(depth + 1) * (width + 1)];
+            trees.put(species, tree);
+        }
+        for(int i = row + 1; i <= depth; i += i & -i) {
+            for(int j = col + 1; j <= width; j += j & -j) {
+                tree[i * (width + 1) + j] += delta;
+            }
+        }
+    }
+
+    /**
+     * Count the members of a species in a rectangle of the field.
+     * The rectangle is clipped to the field.
+     * @param species The species' class.
+     * @param top The first row of the rectangle.
+     * @param left The first column of the rectangle.
+     * @param bottom The last row of the rectangle.
+     * @param right The last column of the rectangle.
+     * @return The number of members of the species in the rectangle.
+     */
+    public int count(Class<?> species, int top, int left, int bottom, int right)
+    {
+        int[] tree = trees.get(species);
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, depth - 1);
+        right = Math.min(right, width - 1);
+        if(tree == null || top > bottom || left > right) {
+            return 0;
+        }
+        return prefix(tree, bottom + 1, right + 1) - prefix(tree, top, right + 1)
+            - prefix(tree, bottom + 1, left) + prefix(tree, top, left);
+    }
+
+    /**
+     * Count the members of a species in the first rows and columns.
+     * @param tree The species' Fenwick tree.
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @return The count in that corner of the field.
+     */
+    private int prefix(int[] tree, int rows, int cols)
+    {
+        int sum = 0;
+        for(int i = rows; i > 0; i -= i & -i) {
+            for(int j = cols; j > 0; j -= j & -j) {
+                sum += tree[i * (width + 1) + j];
+            }
+        }
+        return sum;
+    }
+}
@@ -21,9 +21,6 @@ public abstract class Predator extends Animal
     // The probability that a predator kills their own species.
     private static final double SAME_KILLING_PROBABILITY = 0.007;
     
-    // A shared random number generator.
-    private static final Random rand = Randomizer.getRandom();
-
     /**
      * Create a predator. A predator can be created as a new born (age zero
      * and not hungry) or with a random age and food level.
@@ -46,16 +43,32 @@ public abstract class Predator extends Animal
      */
     protected Location findFood(){
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation(), 1 ,1);
+        int rowRadius = 1;
+        int colRadius = 1;
         if(Weather.getWeather().equals("sun")){
-            adjacent = field.adjacentLocations(getLocation(), 2, 2);
+            rowRadius = 2;
+            colRadius = 2;
         }
         else if(Weather.getWeather().equals("fog")){
-            adjacent = field.adjacentLocations(getLocation(), 0, 1);
+            rowRadius = 0;
+        }
+        count(BehaviourCounters.FOOD_SEARCHES, 1);
+        if(rowRadius != 1 || colRadius != 1){
+            // The neighbours were once shuffled before the search was
+            // widened or narrowed, and seeded runs still draw for them.
+            field.skipAdjacentLocations(getLocation(), 1, 1);
         }
+        // Skip the search if there are no prey in any nearby tile.
+        if(!field.mayContain(getLocation(), rowRadius, colRadius, Field.PREY)){
+            field.skipAdjacentLocations(getLocation(), rowRadius, colRadius);
+            return null;
+        }
+        List<Location> adjacent = field.adjacentLocations(getLocation(), rowRadius, colRadius);
         Iterator<Location> it = adjacent.iterator();
+        int examined = 0;
         while(it.hasNext()){
             Location where = it.next();
+            examined++;
             Object being = field.getObjectAt(where);
             if(being != null){
                 String preyName = being.getClass().getName();
@@ -63,16 +76,19 @@ public abstract class Predator extends Animal
                     Prey prey = (Prey) being;
                     int preyFV = prey.getFV();
                     if (getFoodLevel() + preyFV <= getMaxFL()){
-                        prey.setDead();
+                        prey.setDead(BehaviourCounters.DEATH_PREDATION);
                         if (prey.hasDisease()){
                             setInfected(Disease.setDiseased(this));
                         }
                         setFoodLevel(getFoodLevel() + preyFV);
+                        count(BehaviourCounters.FOOD_CELLS_EXAMINED, examined);
+                        count(BehaviourCounters.FOOD_FOUND, 1);
                         return where;
                     }
                 }
             }
         }
+        count(BehaviourCounters.FOOD_CELLS_EXAMINED, examined);
         return null;
     }
 
@@ -84,10 +100,19 @@ public abstract class Predator extends Animal
     protected Location combatEnemy()
     {
         Field field = getField();
+        // Skip the search if there are no other predators in nearby tiles.
+        // This predator is only counted if it has not been overwritten.
+        int self = field.getObjectAt(getLocation()) == this ? 1 : 0;
+        if(field.countUpperBound(getLocation(), 1, 1, Field.PREDATOR) - self <= 0){
+            field.skipAdjacentLocations(getLocation(), 1, 1);
+            return null;
+        }
         List<Location> adjacent = field.adjacentLocations(getLocation(),1,1);
         Iterator<Location> it = adjacent.iterator();
+        int examined = 0;
         while(it.hasNext()) {
             Location where = it.next();
+            examined++;
             Object animal = field.getObjectAt(where);
             if (animal != null){
                 Class myClass = getClass();
@@ -101,20 +126,23 @@ public abstract class Predator extends Animal
                     else if (myClass.getName().equals("Hyena")){
                         OPPONENT_KILLING_PROBABILITY = HYENA_KILLING_INSTINCT_PROBABILITY;
                     }
-                    if(opponent.isAlive() && rand.nextDouble()<= OPPONENT_KILLING_PROBABILITY) { 
-                        opponent.setDead();
+                    if(opponent.isAlive() && Randomizer.getRandom().nextDouble()<= OPPONENT_KILLING_PROBABILITY) { 
+                        opponent.setDead(BehaviourCounters.DEATH_COMBAT);
+                        count(BehaviourCounters.COMBAT_CELLS_EXAMINED, examined);
                         return where;
                     }
                 }
                 else if(animalClass == myClass) {
                     Predator opponent = (Predator) animal;
-                    if(opponent.isAlive() && rand.nextDouble()<= SAME_KILLING_PROBABILITY) { 
-                        opponent.setDead();
+                    if(opponent.isAlive() && Randomizer.getRandom().nextDouble()<= SAME_KILLING_PROBABILITY) { 
+                        opponent.setDead(BehaviourCounters.DEATH_COMBAT);
+                        count(BehaviourCounters.COMBAT_CELLS_EXAMINED, examined);
                         return where;
                     }
                 }
             }
         }
+        count(BehaviourCounters.COMBAT_CELLS_EXAMINED, examined);
         return null;
     }
 
@@ -126,16 +154,16 @@ public abstract class Predator extends Animal
      */
     public void act(List<Actor> newBabies)
     {
-        incrementAge();
         if (sickDays == 5){
             isInfected = !isInfected;
             sickDays = 0;
             Disease.decrementPlagueCount(this);
+            attributesChanged();
         }
         if (hasDisease()){
-            int randomValue = 1 + rand.nextInt(10);
-            age+= randomValue;
+            int randomValue = 1 + Randomizer.getRandom().nextInt(10);
             sickDays++;
+            addAge(randomValue);
         }
         setAsleep();
         setAwake();
@@ -152,8 +180,8 @@ public abstract class Predator extends Animal
                     newLocation = findFood();
                 }
                 if(newLocation == null) { 
-                    // No food found - try to move to a free location.
-                    newLocation = getField().freeAdjacentLocation(getLocation());
+                    // No food found - try to move towards the scent of prey.
+                    newLocation = getField().uphillAdjacentLocation(getLocation(), DiffusionField.PREY_SCENT);
                 }
                 if (newLocation == null){
                     newLocation = ignoreGrass();
@@ -167,7 +195,7 @@ public abstract class Predator extends Animal
                 }
                 else {
                     // Overcrowding.
-                    setDead();
+                    setDead(BehaviourCounters.DEATH_OVERCROWDING);
                 }
             }
         }
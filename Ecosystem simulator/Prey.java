@@ -1,6 +1,5 @@
 import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
 
 /**
  * A class that represents shared characteristics of
@@ -13,8 +12,6 @@ import java.util.Random;
 public abstract class Prey extends Animal
 {
     
-    //A shared random number generator.
-    private static final Random rand = Randomizer.getRandom();
     
     /**
      * Create a prey. A prey can be created as a new born (age zero
@@ -37,19 +34,19 @@ public abstract class Prey extends Animal
      */
     public void act(List<Actor> newBabies)
     {
-        incrementAge();
         if (sickDays == 5){
             isInfected = !isInfected;
             sickDays = 0;
             Disease.decrementPlagueCount(this);
+            attributesChanged();
         }
         setAsleep(); 
         setAwake();
         if(isAwake()){
             if (hasDisease()){
-                int randomValue = 1 + rand.nextInt(10);
-                age+= randomValue;
+                int randomValue = 1 + Randomizer.getRandom().nextInt(10);
                 sickDays++;
+                addAge(randomValue);
             }
             incrementHunger();
             if(isAlive()) {
@@ -61,8 +58,8 @@ public abstract class Prey extends Animal
                 }
 
                 if(newLocation == null) { 
-                    // No food found - try to move to a free location.
-                    newLocation = getField().freeAdjacentLocation(getLocation());
+                    // No food found - try to move towards plants.
+                    newLocation = getField().uphillAdjacentLocation(getLocation(), DiffusionField.PLANT_DENSITY);
                 }
                 // See if it was possible to move.
                 if (newLocation == null){
@@ -73,7 +70,7 @@ public abstract class Prey extends Animal
                 }
                 else {
                     // Overcrowding.
-                    setDead();
+                    setDead(BehaviourCounters.DEATH_OVERCROWDING);
                 }
             }
         }
@@ -89,23 +86,34 @@ public abstract class Prey extends Animal
     protected Location findFood()
     {
         Field field = getField();
+        count(BehaviourCounters.FOOD_SEARCHES, 1);
+        // Skip the search if there are no plants in any nearby tile.
+        if(!field.mayContain(getLocation(), 1, 1, Field.PLANT)) {
+            field.skipAdjacentLocations(getLocation(), 1, 1);
+            return null;
+        }
         List<Location> adjacent = field.adjacentLocations(getLocation(),1,1);
         Iterator<Location> it = adjacent.iterator();
+        int examined = 0;
         while(it.hasNext()) {
             Location where = it.next();
+            examined++;
             Object food = field.getObjectAt(where);
             if(food instanceof Plant) {
                 Plant plant = (Plant) food;
                 if(plant.isAlive() && plant.getAge() >= plant.getBreedingAge()) {
                     int plantFV = plant.getFV();
                     if (getFoodLevel() + plantFV <= getMaxFL()){
-                        plant.setDead();
+                        plant.setDead(BehaviourCounters.DEATH_PREDATION);
                         setFoodLevel(getFoodLevel() + plantFV);
+                        count(BehaviourCounters.FOOD_CELLS_EXAMINED, examined);
+                        count(BehaviourCounters.FOOD_FOUND, 1);
                         return where;
                     }
                 }
             }
         }
+        count(BehaviourCounters.FOOD_CELLS_EXAMINED, examined);
         return null;
     }
 
@@ -13,9 +13,11 @@ public class Randomizer
     // The default seed for control of randomization.
     private static final int SEED = 1111;
     // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
+    private static final SavableRandom rand = new SavableRandom(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // A generator used in place of the shared one by the current thread, if any.
+    private static final ThreadLocal<Random> threadRandom = new ThreadLocal<>();
 
     /**
      * Constructor for objects of class Randomizer
@@ -30,6 +32,10 @@ public class Randomizer
      */
     public static Random getRandom()
     {
+        Random random = threadRandom.get();
+        if(random != null) {
+            return random;
+        }
         if(useShared) {
             return rand;
         }
@@ -38,6 +44,25 @@ public class Randomizer
         }
     }
     
+    /**
+     * Provide a generator to be used by the current thread in place of
+     * the shared one, so that work split between threads gives the same
+     * results however it is split. Only code that asks for a generator
+     * after this is called will use it, so a generator must be asked for
+     * where it is used rather than kept in a static field, which would
+     * hold whichever one the first thread to load the class was given.
+     * @param random The generator, or null to use the shared one again.
+     */
+    public static void setThreadRandom(Random random)
+    {
+        if(random == null) {
+            threadRandom.remove();
+        }
+        else {
+            threadRandom.set(random);
+        }
+    }
+
     /**
      * Reset the randomization.
      * This will have no effect if randomization is not through
@@ -49,4 +74,82 @@ public class Randomizer
             rand.setSeed(SEED);
         }
     }
+
+    /**
+     * Return the state of the shared generator, so that it can be put
+     * back later to carry on with the same numbers.
+     * @return The state.
+     */
+    public static long getState()
+    {
+        return rand.getState();
+    }
+
+    /**
+     * Put the shared generator back to a state it was in.
+     * @param state A state returned by getState.
+     */
+    public static void setState(long state)
+    {
+        rand.setState(state);
+    }
+
+    /**
+     * Reset the randomization to start from the given seed.
+     * This will have no effect if randomization is not through
+     * a shared Random generator.
+     * @param seed The seed.
+     */
+    public static void reset(long seed)
+    {
+        if(useShared) {
+            rand.setSeed(seed);
+        }
+    }
+
+    /**
+     * A generator giving exactly the numbers of java.util.Random, whose
+     * state can be read and set. It is not safe to share between threads.
+     */
+    private static class SavableRandom extends Random
+    {
+        // Random is serializable; this class is never serialized.
+        private static final long serialVersionUID = 1L;
+        // The multiplier, addend and mask of the linear congruential generator.
+        private static final long MULTIPLIER = 0x5DEECE66DL;
+        private static final long ADDEND = 0xBL;
+        private static final long MASK = (1L << 48) - 1;
+
+        // The generator's state. It is set by Random's constructor.
+        private long state;
+
+        private SavableRandom(long seed)
+        {
+            super(seed);
+        }
+
+        @Override
+        public synchronized void setSeed(long seed)
+        {
+            super.setSeed(seed);
+            state = (seed ^ MULTIPLIER) & MASK;
+        }
+
+        @Override
+        protected int next(int bits)
+        {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            return (int) (state >>> (48 - bits));
+        }
+
+        private long getState()
+        {
+            return state;
+        }
+
+        private void setState(long state)
+        {
+            this.state = state & MASK;
+        }
+    }
 }
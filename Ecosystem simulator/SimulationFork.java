@@ -0,0 +1,168 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A running simulation forked at one step into branches, to ask what
+ * would happen from there with other parameters or other luck.
+ *
+ * The state at the fork is saved once, and every branch starts from
+ * that one copy: a branch only takes memory of its own while it runs,
+ * and only one branch is held at a time in each JVM running them.
+ * Each branch has a setting of parameters named as in ParameterSweep,
+ * such as "Disease.DISEASED_PROBABILITY", and may give a
+ * "Randomizer.SEED" to follow its own stream of random numbers; a
+ * branch with neither carries on exactly as the simulation would have.
+ * Creation probabilities cannot be set, as the field is already
+ * populated.
+ *
+ * The clock, the weather, the disease and the random number generator
+ * are shared by the whole simulation, so once a branch has been opened
+ * or run in this JVM the simulation forked from cannot carry on here;
+ * open a branch with no setting instead. Branches run in parallel in
+ * worker JVMs.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class SimulationFork implements AutoCloseable
+{
+    // The file holding the state at the fork.
+    private Path stateFile;
+    // The size of the field.
+    private int depth, width;
+    // The step at which the simulation was forked.
+    private int step;
+    // The setting of each branch, by name.
+    private Map<String, Map<String, Double>> branches;
+
+    /**
+     * Fork a simulation at its current step. The simulation is not
+     * changed, and can carry on until a branch is opened or run.
+     * @param simulator The simulation, which must be savable.
+     * @throws IOException If the state cannot be saved.
+     */
+    public SimulationFork(Simulator simulator) throws IOException
+    {
+        depth = simulator.getField().getDepth();
+        width = simulator.getField().getWidth();
+        step = Simulator.getStep();
+        branches = new LinkedHashMap<>();
+        stateFile = Files.createTempFile("fork-" + step + "-", ".state");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(stateFile))))) {
+            simulator.saveState(out);
+        }
+        catch(IOException | RuntimeException e) {
+            Files.deleteIfExists(stateFile);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The step at which the simulation was forked.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Add a branch, or replace the setting of one.
+     * @param name The branch's name.
+     * @param setting The value of each parameter set in the branch;
+     * the others keep their defaults.
+     */
+    public void addBranch(String name, Map<String, Double> setting)
+    {
+        for(String parameter : setting.keySet()) {
+            ParameterSweep.checkParameter(parameter);
+            if(parameter.endsWith("_CREATION_PROBABILITY")) {
+                throw new IllegalArgumentException("A fork is already populated: " + parameter);
+            }
+        }
+        branches.put(name, new LinkedHashMap<>(setting));
+    }
+
+    /**
+     * @return The names of the branches, in the order they were added.
+     */
+    public List<String> getBranchNames()
+    {
+        return new ArrayList<>(branches.keySet());
+    }
+
+    /**
+     * Open a branch in this JVM, to be stepped by hand. Its parameters
+     * stay set until another branch is opened or run.
+     * @param name The branch's name.
+     * @return The simulation at the fork, without a view.
+     * @throws IOException If the state cannot be read.
+     */
+    public Simulator open(String name) throws IOException
+    {
+        Field field = new Field(depth, width);
+        return ParameterSweep.openState(stateFile, field, getSetting(name));
+    }
+
+    /**
+     * Run every branch for a number of steps from the fork.
+     * @param steps The most steps after the fork.
+     * @param workers The number of branches run at once. With more than
+     * one, each is run in a worker JVM.
+     * @param stopConditions The conditions that stop a branch early, as
+     * in ParameterSweep.
+     * @return The result of each branch, by name.
+     * @throws IOException If a worker fails.
+     */
+    public Map<String, ParameterSweep.Result> run(int steps, int workers, String... stopConditions)
+        throws IOException
+    {
+        ParameterSweep sweep = new ParameterSweep(depth, width, steps, 0);
+        sweep.setStartState(stateFile);
+        for(String condition : stopConditions) {
+            sweep.addStopCondition(condition);
+        }
+        List<String> names = getBranchNames();
+        List<Map<String, Double>> settings = new ArrayList<>();
+        for(String name : names) {
+            settings.add(branches.get(name));
+        }
+        List<ParameterSweep.Result> results = sweep.run(settings, workers);
+        Map<String, ParameterSweep.Result> byName = new LinkedHashMap<>();
+        for(int i = 0; i < names.size(); i++) {
+            byName.put(names.get(i), results.get(i));
+        }
+        return byName;
+    }
+
+    /**
+     * Remove the state saved at the fork.
+     * @throws IOException If it cannot be removed.
+     */
+    public void close() throws IOException
+    {
+        Files.deleteIfExists(stateFile);
+    }
+
+    /**
+     * @param name A branch's name.
+     * @return Its setting.
+     * @throws IllegalArgumentException If there is no such branch.
+     */
+    private Map<String, Double> getSetting(String name)
+    {
+        Map<String, Double> setting = branches.get(name);
+        if(setting == null) {
+            throw new IllegalArgumentException("No branch " + name);
+        }
+        return setting;
+    }
+}
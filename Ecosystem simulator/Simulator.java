@@ -1,7 +1,17 @@
 import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.awt.Color;
 
 /**
@@ -18,6 +28,12 @@ public class Simulator
     private static final int DEFAULT_WIDTH = 210;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 150;
+    // The number of steps in each hour of the simulation clock.
+    private static final int STEPS_PER_HOUR = 3;
+    // The number of steps between weather changes.
+    private static final int WEATHER_CYCLE_STEPS = 50;
+    // The default time to wait after each step when delayed, in milliseconds.
+    private static final int DEFAULT_DELAY = 120;
 
     // The probability that an animal will be created in any given grid position.
     private static final double ZEBRA_CREATION_PROBABILITY = 0.30;
@@ -29,6 +45,8 @@ public class Simulator
     // The probability that a plant will be created in any given grid position.
     private static final double GRASS_CREATION_PROBABILITY = 0.50;
     private static final double POISONIVY_CREATION_PROBABILITY = 0.01;
+    // The number of positions from which fields are populated in bulk.
+    private static final long BULK_POPULATION_CELLS = 1 << 22;
 
     // List of animals in the field.
     private List<Actor> actors;
@@ -42,17 +60,62 @@ public class Simulator
     private static int step;
 
     private Disease disease;
-    // A graphical view of the simulation.
+    // A graphical view of the simulation, or null if there is none.
     private SimulatorView view;
+    // The statistics used to check viability when there is no view.
+    private FieldStats stats;
 
     // The current time of the simulation.
     private static int time;
     
     // Determines whether the simulation is to be delayed or not.
-    private boolean toBeDelayed;
+    private volatile boolean toBeDelayed;
+    // The time to wait after each step when delayed, in milliseconds.
+    private volatile int delayMillis;
     
     // Determines whether the simulation is to be stopped or not.
-    private boolean isStopped;
+    private volatile boolean isStopped;
+    // Whether the simulation waits before its next step.
+    private volatile boolean isPaused;
+    // Whether a run of steps is in progress.
+    private volatile boolean isRunning;
+    // Whether the current run of steps ends because the steady state was reached.
+    private boolean steadyReached;
+
+    // How the actors are stepped.
+    private StepMode stepMode;
+    // The calendar of actor events used when event driven.
+    private EventScheduler scheduler;
+    // The species groups used when stepping at multiple rates.
+    private MultiRateScheduler multiRate;
+    // The steps on which actors die of old age.
+    private ExpiryIndex expiries;
+    // The number of steps between sorting the actors by location (0 for never).
+    private int actorSortInterval;
+    // The profiler timing each step, or null when not profiling.
+    private StepProfiler profiler;
+    // Makes the actors act, timing some of the acts.
+    private ActTimer actTimer;
+    // The probability of creating each species in a position when populating.
+    private Map<Class<?>, Double> creationProbabilities;
+    // The map from which the field is filled on reset, or null to populate it at random.
+    private HabitatMap habitat;
+    // The renderer of map tiles, or null if there is none.
+    private TileRenderer tileRenderer;
+    // The number of steps between captures for the tile renderer.
+    private int tileInterval;
+    // The exporter of a frame for each step, or null if there is none.
+    private FrameExporter frameExporter;
+    // The streamer of each step to dashboards, or null if there is none.
+    private StateStreamer stateStreamer;
+    // The server controlling the simulation over HTTP, or null if there is none.
+    private ControlServer controlServer;
+    // The detector of a steady state, or null if there is none.
+    private SteadyStateDetector steadyState;
+    // What to do once the steady state is reached.
+    private SteadyStateDetector.Action steadyAction;
+    // The number of steps between observations once steady.
+    private int sampleInterval;
 
     /**
      * Construct a simulation field with default size.
@@ -69,25 +132,109 @@ public class Simulator
      */
     public Simulator(int depth, int width)
     {
-        if(width <= 0 || depth <= 0) {
-            System.out.println("The dimensions must be greater than zero.");
-            System.out.println("Using default values.");
-            depth = DEFAULT_DEPTH;
-            width = DEFAULT_WIDTH;
-        }
+        this(createField(depth, width));
+    }
 
+    /**
+     * Create a simulation on the given field, such as a MappedField
+     * whose positions are stored off the heap.
+     * @param field The field to simulate.
+     */
+    public Simulator(Field field)
+    {
+        this(field, true);
+    }
+
+    /**
+     * Create a simulation on the given field, with or without a view.
+     * Without a view the simulation runs headless, for batch runs and
+     * for machines with no display.
+     * @param field The field to simulate.
+     * @param showView Whether to show a graphical view of the simulation.
+     */
+    public Simulator(Field field, boolean showView)
+    {
+        this(field, showView, new HashMap<>());
+    }
+
+    /**
+     * Create a simulation on the given field, populated with the given
+     * probabilities of creating each species in a position. Species
+     * that are not given keep their default probabilities.
+     * @param field The field to simulate.
+     * @param showView Whether to show a graphical view of the simulation.
+     * @param creationProbabilities The probability of creating each species.
+     */
+    public Simulator(Field field, boolean showView, Map<Class<?>, Double> creationProbabilities)
+    {
+        this(field, showView, creationProbabilities, null);
+    }
+
+    /**
+     * Create a simulation on the given field, filled from a habitat map
+     * rather than at random.
+     * @param field The field to simulate.
+     * @param showView Whether to show a graphical view of the simulation.
+     * @param habitat The map from which the field is filled.
+     * @throws UncheckedIOException If the map cannot be read.
+     */
+    public Simulator(Field field, boolean showView, HabitatMap habitat)
+    {
+        this(field, showView, new HashMap<>(), habitat);
+    }
+
+    /**
+     * Create a simulation on the given field.
+     * @param field The field to simulate.
+     * @param showView Whether to show a graphical view of the simulation.
+     * @param creationProbabilities The probability of creating each species.
+     * @param habitat The map from which the field is filled, or null
+     * to populate it at random.
+     */
+    private Simulator(Field field, boolean showView, Map<Class<?>, Double> creationProbabilities,
+                      HabitatMap habitat)
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
         actors = new ArrayList<>();
-        field = new Field(depth, width);
+        stepMode = StepMode.EVERY_STEP;
+        scheduler = new EventScheduler();
+        multiRate = new MultiRateScheduler();
+        expiries = new ExpiryIndex();
+        actTimer = new ActTimer();
+        this.field = field;
         weather = new Weather();
-        // Create a view of the state of each location in the field.
-        view = new SimulatorView(depth, width, this);
+        stats = new FieldStats();
         disease = new Disease();
+        this.creationProbabilities = new HashMap<>(creationProbabilities);
+        this.habitat = habitat;
 
         // Sets delay off by default.
         toBeDelayed = false;
+        delayMillis = DEFAULT_DELAY;
         // Keeps the simulation running by default.
         isStopped = false;
 
+        if(showView) {
+            // Create a view of the state of each location in the field.
+            view = new SimulatorView(depth, width, this);
+
+            // Sets the color for actor classes on the grid
+            for(Map.Entry<Class<?>, Color> entry : getSpeciesColors().entrySet()) {
+                view.setColor(entry.getKey(), entry.getValue());
+            }
+        }
+        // Setup a valid starting point.
+        reset();
+    }
+
+    /**
+     * Return the colour in which each species is drawn, for the view
+     * and for anything else that draws the field.
+     * @return A new map from each species to its colour.
+     */
+    public static Map<Class<?>, Color> getSpeciesColors()
+    {
         // Creates custom colors with RGB values
         Color zebraColor = new Color(153, 204, 255);
         Color hyenaColor = new Color(102, 51, 0);
@@ -95,16 +242,33 @@ public class Simulator
         Color poisonIvyColor = new Color(204, 153, 255);
         Color giraffeColor = new Color(204, 0, 102);
 
-        // Sets the color for actor classes on the grid
-        view.setColor(Zebra.class, zebraColor);
-        view.setColor(Lion.class, Color.RED);
-        view.setColor(Gazelle.class, Color.ORANGE);
-        view.setColor(Hyena.class, hyenaColor);
-        view.setColor(PoisonIvy.class, poisonIvyColor);
-        view.setColor(Giraffe.class, giraffeColor);
-        view.setColor(Grass.class, normGrass);
-        // Setup a valid starting point.
-        reset();
+        Map<Class<?>, Color> colors = new LinkedHashMap<>();
+        colors.put(Zebra.class, zebraColor);
+        colors.put(Lion.class, Color.RED);
+        colors.put(Gazelle.class, Color.ORANGE);
+        colors.put(Hyena.class, hyenaColor);
+        colors.put(PoisonIvy.class, poisonIvyColor);
+        colors.put(Giraffe.class, giraffeColor);
+        colors.put(Grass.class, normGrass);
+        return colors;
+    }
+
+    /**
+     * Create a field with the given size, or the default size if the
+     * given one is not valid.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @return The new field.
+     */
+    private static Field createField(int depth, int width)
+    {
+        if(width <= 0 || depth <= 0) {
+            System.out.println("The dimensions must be greater than zero.");
+            System.out.println("Using default values.");
+            depth = DEFAULT_DEPTH;
+            width = DEFAULT_WIDTH;
+        }
+        return new Field(depth, width);
     }
 
     /**
@@ -132,6 +296,39 @@ public class Simulator
         return time;
     }   
 
+    /**
+     * @return The current step of the simulation.
+     */
+    public static int getStep(){
+        return step;
+    }
+
+    /**
+     * Finds the first step after the given one at which the clock
+     * shows the given hour.
+     * @param step The current step.
+     * @param hour The hour of the day.
+     * @return The next step at that hour.
+     */
+    public static int nextStepAtTime(int step, int hour){
+        int next = step + 1;
+        int hoursAhead = (hour - (next / STEPS_PER_HOUR) % 24 + 24) % 24;
+        if(hoursAhead == 0) {
+            return next;
+        }
+        return (next / STEPS_PER_HOUR + hoursAhead) * STEPS_PER_HOUR;
+    }
+
+    /**
+     * Finds the first step after the given one at which the weather
+     * changes.
+     * @param step The current step.
+     * @return The step of the next weather change.
+     */
+    public static int nextWeatherStep(int step){
+        return (step / WEATHER_CYCLE_STEPS + 1) * WEATHER_CYCLE_STEPS;
+    }
+
     /**
      * Run the simulation from its current state for a reasonably long period.
      * (4000 steps).
@@ -148,15 +345,189 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        for(int step = 1; step <= numSteps && view.isViable(field); step++) {
-            if (isStopped) {
-                break;
-            }
-            simulateOneStep();
-            if(toBeDelayed){
-                delay(120);   //uncomment this to run more slowly 
+        isRunning = true;
+        steadyReached = false;
+        try {
+            for(int step = 1; step <= numSteps && checkViable(); step++) {
+                waitWhilePaused();
+                if (isStopped || steadyReached) {
+                    break;
+                }
+                simulateOneStep();
+                if(toBeDelayed){
+                    delay(delayMillis);   //uncomment this to run more slowly 
+                }
             }
         }
+        finally {
+            isRunning = false;
+        }
+    }
+
+    /**
+     * @return true if a run of steps is in progress, even if paused.
+     */
+    public boolean isRunning()
+    {
+        return isRunning;
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        if(view != null) {
+            return view.isViable(field);
+        }
+        // Without a view the counts are not kept up to date.
+        stats.reset();
+        return stats.isViable(field);
+    }
+
+    /**
+     * Determine whether the simulation should continue to run,
+     * charging the time taken to the stats of the last step.
+     * @return true If there is more than one species alive.
+     */
+    private boolean checkViable()
+    {
+        if(profiler == null) {
+            return isViable();
+        }
+        long start = System.nanoTime();
+        boolean viable = isViable();
+        profiler.addTime(StepProfiler.STATS, System.nanoTime() - start);
+        return viable;
+    }
+
+    /**
+     * Turns on or off the timing of each phase of each step.
+     * @param enabled true to time each step.
+     */
+    public void setProfilingEnabled(boolean enabled)
+    {
+        if(enabled && profiler == null) {
+            profiler = new StepProfiler();
+        }
+        else if(!enabled) {
+            profiler = null;
+        }
+        actTimer.setProfiler(profiler);
+    }
+
+    /**
+     * Capture the field for a renderer of map tiles every few steps.
+     * @param renderer The renderer, or null for none.
+     * @param interval The number of steps between captures.
+     */
+    public void setTileRenderer(TileRenderer renderer, int interval)
+    {
+        tileRenderer = renderer;
+        tileInterval = Math.max(1, interval);
+    }
+
+    /**
+     * Record a frame of the field at the end of every step.
+     * @param exporter The exporter of the frames, or null for none.
+     */
+    public void setFrameExporter(FrameExporter exporter)
+    {
+        frameExporter = exporter;
+    }
+
+    /**
+     * Send the state of the field to connected dashboards at the end
+     * of every step.
+     * @param streamer The streamer, or null for none.
+     */
+    public void setStateStreamer(StateStreamer streamer)
+    {
+        stateStreamer = streamer;
+    }
+
+    /**
+     * Tell a control server about the end of every step.
+     * @param server The server, or null for none.
+     */
+    public void setControlServer(ControlServer server)
+    {
+        controlServer = server;
+    }
+
+    /**
+     * Watch the populations for a steady state, and stop the run or
+     * observe it less often once it is reached. Observing is showing
+     * the view and capturing for the tile renderer, frame exporter and
+     * state streamer.
+     * @param detector The detector, or null for none.
+     * @param action What to do once the steady state is reached.
+     * @param sampleInterval When sampling, the number of steps between
+     * observations.
+     */
+    public void setSteadyStateDetector(SteadyStateDetector detector, SteadyStateDetector.Action action,
+                                       int sampleInterval)
+    {
+        steadyState = detector;
+        steadyAction = action;
+        this.sampleInterval = Math.max(1, sampleInterval);
+    }
+
+    /**
+     * Turns on or off the counting of the animals' searches, moves
+     * and causes of death. See BehaviourCounters for the counts.
+     * @param enabled true to count.
+     */
+    public void setCountersEnabled(boolean enabled)
+    {
+        BehaviourCounters.reset();
+        BehaviourCounters.setEnabled(enabled);
+    }
+
+    /**
+     * @return The profiler timing each step, or null when not profiling.
+     */
+    public StepProfiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * Returns the number of actors being simulated. This may include
+     * actors that have died on this step but not yet been removed.
+     * @return The number of actors.
+     */
+    public int getActorCount()
+    {
+        if(stepMode == StepMode.EVENT_DRIVEN) {
+            return scheduler.size();
+        }
+        else if(stepMode == StepMode.MULTI_RATE) {
+            return multiRate.size();
+        }
+        return actors.size();
+    }
+
+    /**
+     * @return The field being simulated.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * Returns a hash of the whole state of the simulation: the clock,
+     * the weather and the contents of the field. The field's part is
+     * kept up to date as the field changes, so this is cheap to call
+     * on every step.
+     * @return The hash of the current state.
+     */
+    public long getStateHash()
+    {
+        long clock = ((long) step << 40) ^ ((long) time << 32) ^ Weather.getWeather().hashCode();
+        return field.getHash() ^ Field.mix(clock);
     }
 
     /**
@@ -166,11 +537,149 @@ public class Simulator
         toBeDelayed = !toBeDelayed;
     }
 
+    /**
+     * Sets the time to wait after each step.
+     * @param millis The delay in milliseconds, or 0 for none.
+     */
+    public void setDelay(int millis) {
+        // The last delay is kept for the view's toggle.
+        if(millis > 0) {
+            delayMillis = millis;
+        }
+        toBeDelayed = millis > 0;
+    }
+
+    /**
+     * @return The time waited after each step in milliseconds, or 0
+     * if there is no delay.
+     */
+    public int getDelay() {
+        return toBeDelayed ? delayMillis : 0;
+    }
+
     /**
      * Stops the simulation when called.
      */
-    public void stopSim() {
+    public synchronized void stopSim() {
         isStopped = !isStopped;
+        notifyAll();
+    }
+
+    /**
+     * Stops the simulation after the current step, or lets it run again.
+     * @param stopped true to stop the simulation.
+     */
+    public synchronized void setStopped(boolean stopped) {
+        isStopped = stopped;
+        notifyAll();
+    }
+
+    /**
+     * @return true if the simulation has been stopped.
+     */
+    public boolean isStopped() {
+        return isStopped;
+    }
+
+    /**
+     * Pauses the simulation before its next step, or resumes it.
+     * @param paused true to pause the simulation.
+     */
+    public synchronized void setPaused(boolean paused) {
+        isPaused = paused;
+        notifyAll();
+    }
+
+    /**
+     * @return true if the simulation is paused.
+     */
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    /**
+     * Changes how the actors are stepped. By default every actor acts
+     * on every step. In event-driven mode sleeping animals and plants
+     * that cannot breed are skipped until their next wake-up or
+     * breeding. In multi-rate mode each group of species acts at its
+     * own rate.
+     * @param stepMode The new step mode.
+     */
+    public void setStepMode(StepMode stepMode) {
+        if(stepMode == this.stepMode) {
+            return;
+        }
+        // Gather the actors from the current mode.
+        if(this.stepMode == StepMode.EVENT_DRIVEN) {
+            actors = scheduler.drain(step);
+        }
+        else if(this.stepMode == StepMode.MULTI_RATE) {
+            actors = multiRate.drain();
+        }
+        this.stepMode = stepMode;
+        distributeActors();
+    }
+
+    /**
+     * Sets the number of steps between the acts of a group of species
+     * when stepping at multiple rates.
+     * @param kind The group: Plant, Prey or Predator.
+     * @param rate The number of steps between the group's acts.
+     */
+    public void setGroupRate(Class<?> kind, int rate) {
+        multiRate.setRate(kind, rate);
+    }
+
+    /**
+     * Sets how often the actors are sorted into the storage order of
+     * their locations in the field. Acting in that order means that
+     * consecutive actors search overlapping parts of the field, which
+     * makes better use of the cache on large grids. Sorting changes the
+     * order in which actors act, so it is off by default.
+     * @param steps The number of steps between sorts, or 0 to never sort.
+     */
+    public void setActorSortInterval(int steps) {
+        actorSortInterval = steps;
+    }
+
+    /**
+     * Turns on or off the scent and food channels spread over the
+     * field. With them on, predators that find no prey nearby move up
+     * the scent of prey, and prey that find no plants move towards
+     * plants, instead of moving at random.
+     * @param enabled true to spread and follow the channels.
+     */
+    public void setDiffusionEnabled(boolean enabled) {
+        if(enabled && field.getDiffusion() == null) {
+            field.setDiffusion(new DiffusionField(field.getDepth(), field.getWidth()));
+        }
+        else if(!enabled) {
+            field.setDiffusion(null);
+        }
+    }
+
+    /**
+     * Sorts the actors into the storage order of their locations.
+     * Dead actors, which have no location, are moved to the end.
+     */
+    private void sortActorsByLocation() {
+        actors.sort(Comparator.comparingInt(actor -> actor.getLocation() == null
+            ? Integer.MAX_VALUE : field.cellIndex(actor.getLocation())));
+    }
+
+    /**
+     * Hands the actors over to the scheduler for the current step
+     * mode, if it has one.
+     */
+    private void distributeActors() {
+        if(stepMode == StepMode.EVENT_DRIVEN) {
+            scheduler.scheduleAll(actors, step);
+            actors.clear();
+        }
+        else if(stepMode == StepMode.MULTI_RATE) {
+            multiRate.addAll(actors);
+            actors.clear();
+        }
     }
 
     /**
@@ -179,98 +688,452 @@ public class Simulator
      * lion and zebra.
      */
     public void simulateOneStep()     {
+        if(profiler != null) {
+            profiler.beginStep();
+        }
+        StepEvent stepEvent = new StepEvent();
+        stepEvent.begin();
+        int deathsBefore = Actor.getDeathCount();
         step++;
         
         // Increments the hourly clock every 3 steps.
-        if(step %3 == 0) {
+        if(step % STEPS_PER_HOUR == 0) {
             time++;   
         }
 
         // Cycles the weather every 50 steps.
-        if(step % 50 == 0){
+        if(step % WEATHER_CYCLE_STEPS == 0){
             weather.cycle();
         }
 
         // Rolls over the 24 hour clock.
         if(time == 24){
             time =0;}
+        if(profiler != null) {
+            profiler.endPhase(StepProfiler.CLOCK);
+        }
+
+        // Actors reaching their max age die before anyone acts.
+        expiries.expire(step);
+        if(profiler != null) {
+            profiler.endPhase(StepProfiler.EXPIRY);
+        }
 
         // Provide space for newborn animals.
         List<Actor> newActors = new ArrayList<>();
-        // Let all Actors act.
-        for(Iterator<Actor> it = actors.iterator(); it.hasNext();) {
-            Actor actor = it.next();
-            actor.act(newActors);
-            if(!actor.isAlive()){ 
-                it.remove();
+        actTimer.beginStep(step);
+        if(stepMode == StepMode.EVENT_DRIVEN) {
+            // Only the actors with an event due this step act.
+            scheduler.runStep(step, newActors, actTimer);
+        }
+        else if(stepMode == StepMode.MULTI_RATE) {
+            // Only the species groups due this step act.
+            multiRate.runStep(step, newActors, actTimer);
+        }
+        else {
+            if(actorSortInterval > 0 && step % actorSortInterval == 0) {
+                sortActorsByLocation();
+            }
+            // Let all Actors act.
+            for(Iterator<Actor> it = actors.iterator(); it.hasNext();) {
+                Actor actor = it.next();
+                actTimer.act(actor, newActors, 1);
+                if(!actor.isAlive()){ 
+                    it.remove();
+                }
             }
         }
+        if(profiler != null) {
+            profiler.endActs();
+        }
+
         // Add the newly born actors to the main lists.
-        actors.addAll(newActors);
+        if(stepMode == StepMode.EVERY_STEP) {
+            actors.addAll(newActors);
+        }
+        expiries.addAll(newActors, step);
+        if(profiler != null) {
+            profiler.endPhase(StepProfiler.MERGE);
+        }
+
+        // Spread the scent of the new positions over the field.
+        if(field.getDiffusion() != null) {
+            field.getDiffusion().update(field);
+        }
+        if(profiler != null) {
+            profiler.endPhase(StepProfiler.DIFFUSION);
+        }
+
+        if(steadyState != null && steadyState.record(field, step)
+           && steadyAction == SteadyStateDetector.Action.STOP) {
+            // Only the current run ends; the stop button is left alone.
+            steadyReached = true;
+        }
+        // Once steady and sampling, only some steps are observed.
+        boolean observed = steadyState == null || !steadyState.isSteady()
+            || steadyAction != SteadyStateDetector.Action.SAMPLE || step % sampleInterval == 0;
+
+        if(view != null && observed) {
+            view.showStatus(step, field, time, weather);
+        }
+        if(tileRenderer != null && observed && step % tileInterval == 0) {
+            tileRenderer.capture(field, step);
+        }
+        if(frameExporter != null && observed) {
+            frameExporter.capture(field, step);
+        }
+        if(stateStreamer != null && observed) {
+            stateStreamer.publish(field, step, time, Weather.getWeather());
+        }
+        if(controlServer != null) {
+            controlServer.stepCompleted(this);
+        }
+        if(profiler != null) {
+            profiler.endPhase(StepProfiler.RENDER);
+            profiler.endStep();
+        }
+
+        if(BehaviourCounters.isEnabled()) {
+            BehaviourCounters.endStep();
+        }
+
+        stepEvent.end();
+        if(stepEvent.shouldCommit()) {
+            stepEvent.step = step;
+            stepEvent.timeOfDay = time;
+            stepEvent.weather = Weather.getWeather();
+            stepEvent.actorCount = getActorCount();
+            stepEvent.births = newActors.size();
+            stepEvent.deaths = Actor.getDeathCount() - deathsBefore;
+            stepEvent.commit();
+        }
+    }
+
+    /**
+     * Set the probability of creating a species in each position when
+     * the field is populated, in place of its default. The change
+     * takes effect from the next reset.
+     * @param actorClass The species.
+     * @param probability The probability of creating one in a position.
+     */
+    public void setCreationProbability(Class<?> actorClass, double probability)
+    {
+        creationProbabilities.put(actorClass, probability);
+    }
+
+    /**
+     * @param actorClass The species.
+     * @param defaultProbability The species' default creation probability.
+     * @return The probability of creating the species in a position.
+     */
+    private double getCreationProbability(Class<?> actorClass, double defaultProbability)
+    {
+        return creationProbabilities.getOrDefault(actorClass, defaultProbability);
+    }
 
-        view.showStatus(step, field, time, weather);
+    /**
+     * Fill the field from a habitat map rather than at random, from
+     * the next reset.
+     * @param habitat The map, or null to populate the field at random.
+     */
+    public void setHabitat(HabitatMap habitat)
+    {
+        this.habitat = habitat;
     }
 
     /**
      * Reset the simulation to a starting position.
+     * @throws UncheckedIOException If the habitat map cannot be read.
      */
     public void reset()
     {
         step = 0;
         time = 0;
+        if(steadyState != null) {
+            steadyState.reset();
+        }
         actors.clear();
-        populate();
+        scheduler.clear();
+        multiRate.clear();
+        expiries.clear();
+        if(field.getDiffusion() != null) {
+            field.setDiffusion(new DiffusionField(field.getDepth(), field.getWidth()));
+        }
+        if(habitat != null) {
+            loadHabitat();
+        }
+        else {
+            populate();
+        }
+        expiries.addAll(actors, step);
+        distributeActors();
 
         // Show the starting state in the view.
-        view.showStatus(step, field, time, weather);
+        if(view != null) {
+            view.showStatus(step, field, time, weather);
+        }
     }
 
     /**
-     * Randomly populate the field with Animals and Plants.
+     * Write the state of the simulation, so that it can be carried on
+     * later from the same point with loadState. The clock, the weather,
+     * the shared random number generator and every living actor are
+     * written, with their order and the steps on which they are due to
+     * die of old age, so the run carries on exactly as it would have.
+     * Only a simulation stepping every actor on every step, without
+     * diffusion, can be saved.
+     * @param out The output to write to.
+     * @throws IOException If the state cannot be written.
+     * @throws IllegalStateException If the simulation cannot be saved.
+     */
+    public void saveState(DataOutput out) throws IOException
+    {
+        checkSavable();
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeInt(step);
+        out.writeInt(time);
+        out.writeUTF(Weather.getWeather());
+        out.writeLong(Randomizer.getState());
+
+        List<Actor> living = new ArrayList<>();
+        for(Actor actor : actors) {
+            if(actor.isAlive() && actor.getLocation() != null) {
+                living.add(actor);
+            }
+        }
+        out.writeInt(living.size());
+        Map<Object, Integer> indices = new IdentityHashMap<>();
+        // The actor each position would hold if the actors were placed in order.
+        int[] lastPlaced = new int[depth * width];
+        Arrays.fill(lastPlaced, -1);
+        for(int i = 0; i < living.size(); i++) {
+            Actor actor = living.get(i);
+            Location location = actor.getLocation();
+            out.writeUTF(actor.getClass().getName());
+            out.writeInt(location.getRow());
+            out.writeInt(location.getCol());
+            actor.writeState(out);
+            out.writeBoolean(actor instanceof Animal && Disease.isPatient((Animal) actor));
+            indices.put(actor, i);
+            lastPlaced[location.getRow() * width + location.getCol()] = i;
+        }
+
+        // Write the positions whose occupant is not the last actor placed there.
+        List<int[]> differences = new ArrayList<>();
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                Object occupant = field.getObjectAt(row, col);
+                Integer index = occupant == null ? Integer.valueOf(-1) : indices.get(occupant);
+                if(index == null) {
+                    throw new IllegalStateException("The field holds an actor that is not being simulated");
+                }
+                if(index != lastPlaced[row * width + col]) {
+                    differences.add(new int[] {row, col, index});
+                }
+            }
+        }
+        out.writeInt(differences.size());
+        for(int[] difference : differences) {
+            out.writeInt(difference[0]);
+            out.writeInt(difference[1]);
+            out.writeInt(difference[2]);
+        }
+
+        // Write the expiry index as it is, since an actor aged by illness
+        // stays in the bucket it was first put in.
+        List<int[]> expiring = new ArrayList<>();
+        for(int ahead = 1; ahead < expiries.getWheelSize(); ahead++) {
+            for(Actor actor : expiries.getBucket(step + ahead)) {
+                Integer index = indices.get(actor);
+                if(index != null) {
+                    expiring.add(new int[] {ahead, index});
+                }
+            }
+        }
+        out.writeInt(expiring.size());
+        for(int[] entry : expiring) {
+            out.writeShort(entry[0]);
+            out.writeInt(entry[1]);
+        }
+    }
+
+    /**
+     * Replace the state of the simulation with one written by
+     * saveState, for a field of the same size.
+     * @param in The input to read from.
+     * @throws IOException If the state cannot be read, or is for a
+     * field of another size.
+     * @throws IllegalStateException If the simulation cannot be saved.
+     */
+    public void loadState(DataInput in) throws IOException
+    {
+        checkSavable();
+        int depth = in.readInt();
+        int width = in.readInt();
+        if(depth != field.getDepth() || width != field.getWidth()) {
+            throw new IOException("The state is of a " + depth + " by " + width + " field");
+        }
+        step = in.readInt();
+        time = in.readInt();
+        Weather.setWeather(in.readUTF());
+        long randomState = in.readLong();
+
+        field.clear();
+        actors.clear();
+        expiries.clear();
+        disease = new Disease();
+        int count = in.readInt();
+        for(int i = 0; i < count; i++) {
+            String species = in.readUTF();
+            Location location = new Location(in.readInt(), in.readInt());
+            Actor actor = createActor(species, location);
+            actor.readState(in);
+            if(in.readBoolean()) {
+                Disease.restorePatient((Animal) actor);
+            }
+            actors.add(actor);
+        }
+        int differences = in.readInt();
+        for(int i = 0; i < differences; i++) {
+            Location location = new Location(in.readInt(), in.readInt());
+            int index = in.readInt();
+            if(index < 0) {
+                field.clear(location);
+            }
+            else {
+                field.place(actors.get(index), location);
+            }
+        }
+        int expiring = in.readInt();
+        for(int i = 0; i < expiring; i++) {
+            int ahead = in.readShort();
+            expiries.addAt(actors.get(in.readInt()), step + ahead);
+        }
+        // Creating the actors used random numbers, so the state is set last.
+        Randomizer.setState(randomState);
+
+        if(view != null) {
+            view.showStatus(step, field, time, weather);
+        }
+    }
+
+    /**
+     * Check that the state of the simulation can be saved and loaded.
+     * @throws IllegalStateException If it cannot.
+     */
+    private void checkSavable()
+    {
+        if(stepMode != StepMode.EVERY_STEP) {
+            throw new IllegalStateException("Only a simulation stepping every actor can be saved");
+        }
+        if(field.getDiffusion() != null) {
+            throw new IllegalStateException("A simulation with diffusion cannot be saved");
+        }
+    }
+
+    /**
+     * Create an actor of a species, as a newborn, to have its state read.
+     * @param species The name of the species' class.
+     * @param location The actor's location.
+     * @return The actor.
+     * @throws IOException If there is no such species.
+     */
+    private Actor createActor(String species, Location location) throws IOException
+    {
+        try {
+            Class<?> kind = Class.forName(species);
+            return (Actor) kind.getConstructor(boolean.class, Field.class, Location.class)
+                .newInstance(false, field, location);
+        }
+        catch(ReflectiveOperationException | ClassCastException e) {
+            throw new IOException("Unknown species " + species, e);
+        }
+    }
+
+    /**
+     * Fill the field from the habitat map.
+     */
+    private void loadHabitat()
+    {
+        field.clear();
+        try {
+            actors.addAll(habitat.load(field));
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Randomly populate the field with Animals and Plants. Large
+     * fields are populated in bulk, in parallel.
      */
     private void populate()
     {
         Random rand = Randomizer.getRandom();
+        double lionProbability = getCreationProbability(Lion.class, LION_CREATION_PROBABILITY);
+        double zebraProbability = getCreationProbability(Zebra.class, ZEBRA_CREATION_PROBABILITY);
+        double gazelleProbability = getCreationProbability(Gazelle.class, GAZELLE_CREATION_PROBABILITY);
+        double grassProbability = getCreationProbability(Grass.class, GRASS_CREATION_PROBABILITY);
+        double poisonIvyProbability = getCreationProbability(PoisonIvy.class, POISONIVY_CREATION_PROBABILITY);
+        double giraffeProbability = getCreationProbability(Giraffe.class, GIRAFFE_CREATION_PROBABILITY);
+        double hyenaProbability = getCreationProbability(Hyena.class, HYENA_CREATION_PROBABILITY);
         field.clear();
+        if((long) field.getDepth() * field.getWidth() >= BULK_POPULATION_CELLS) {
+            PopulationGenerator generator = new PopulationGenerator();
+            // In the order below, where a hyena is only tried when no giraffe is placed.
+            generator.addSpecies(lionProbability, (f, l) -> new Lion(true, f, l));
+            generator.addSpecies(zebraProbability, (f, l) -> new Zebra(true, f, l));
+            generator.addSpecies(gazelleProbability, (f, l) -> new Gazelle(true, f, l));
+            generator.addSpecies(grassProbability, (f, l) -> new Grass(true, f, l));
+            generator.addSpecies(poisonIvyProbability, (f, l) -> new PoisonIvy(true, f, l));
+            generator.addSpecies(hyenaProbability, (f, l) -> new Hyena(true, f, l));
+            generator.addSpecies(giraffeProbability, (f, l) -> new Giraffe(true, f, l));
+            actors.addAll(generator.populate(field, rand.nextLong()));
+            return;
+        }
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= LION_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= lionProbability) {
                     Location location = new Location(row, col);
                     Lion lion = new Lion(true, field, location);
                     actors.add(lion);
                 }
 
-                if(rand.nextDouble() <= ZEBRA_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= zebraProbability) {
                     Location location = new Location(row, col);
                     Zebra zebra = new Zebra(true, field, location);
                     actors.add(zebra);
                 }
 
-                if(rand.nextDouble() <= GAZELLE_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= gazelleProbability) {
                     Location location = new Location(row, col);
                     Gazelle gazelle = new Gazelle(true, field, location);
                     actors.add(gazelle);
                 }
 
-                if(rand.nextDouble() <= GRASS_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= grassProbability) {
                     Location location = new Location (row,col);
                     Grass grass = new Grass(true, field, location);
                     actors.add(grass);
                 }
 
-                if(rand.nextDouble() <= POISONIVY_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= poisonIvyProbability) {
                     Location location = new Location (row,col);
                     PoisonIvy poisonivy = new PoisonIvy(true, field, location);
                     actors.add(poisonivy);
                 }
 
-                if(rand.nextDouble() <= GIRAFFE_CREATION_PROBABILITY) {
+                if(rand.nextDouble() <= giraffeProbability) {
                     Location location = new Location (row,col);
                     Giraffe giraffe = new Giraffe(true, field, location);
                     actors.add(giraffe);
                 }
 
-                else if(rand.nextDouble() <= HYENA_CREATION_PROBABILITY) {
+                else if(rand.nextDouble() <= hyenaProbability) {
                     Location location = new Location(row, col);
                     Hyena hyena = new Hyena(true, field, location);
                     actors.add(hyena);
@@ -280,6 +1143,21 @@ public class Simulator
         }
     }
 
+    /**
+     * Wait while the simulation is paused, until it is resumed or stopped.
+     */
+    private synchronized void waitWhilePaused()
+    {
+        while(isPaused && !isStopped) {
+            try {
+                wait();
+            }
+            catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
     /**
      * Pause for a given time.
      * @param millisec  The time to pause for, in milliseconds
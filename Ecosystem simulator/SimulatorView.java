@@ -1,5 +1,7 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import javax.swing.*;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -384,22 +386,10 @@ public class SimulatorView extends JFrame implements ActionListener
         // Sets the weather label.
         weatherLabel.setText("Weather: " + weather.getWeather() + "   ");
 
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
-            }
-        }
-
-        stats.countFinished();
+        // The field keeps counts by block, from which both the view
+        // and the statistics are drawn without visiting every position.
+        field.setPyramidEnabled(true);
+        fieldView.showField(field);
 
         // Sets the disease label.
         diseaseLabel.setText("Infected patients: " + Disease.getPlagueInt());
@@ -444,16 +434,43 @@ public class SimulatorView extends JFrame implements ActionListener
      * component displays the field.
      * This is rather advanced GUI stuff - you can ignore this 
      * for your project if you like.
+     *
+     * The component is a viewport onto the field, which is panned by
+     * dragging and zoomed with the mouse wheel. Zoomed in, each
+     * position is drawn as a square of pixels. Zoomed out, each pixel
+     * shows the mix of species in a block of positions, taken from the
+     * field's pyramid of counts, so drawing takes time in proportion
+     * to the size of the view rather than the size of the field.
+     *
+     * The field is only drawn by the simulation, between its steps, as
+     * the field and its pyramid are changed while a step runs. Panning
+     * and zooming just move the viewport, and are drawn with the next
+     * step shown.
      */
     private class FieldView extends JPanel
     {
         private final int GRID_VIEW_SCALING_FACTOR = 6;
+        // The largest width or height the view asks for, in pixels.
+        private final int MAX_PREFERRED_SIZE = 1200;
+        // The largest number of pixels along the side of a position.
+        private final int MAX_PIXELS_PER_CELL = 48;
 
         private int gridWidth, gridHeight;
-        private int xScale, yScale;
+        // Zoomed in, the number of pixels along the side of a position.
+        private int pixelsPerCell;
+        // Zoomed out, the level of the blocks shown by each pixel, which
+        // are 2^level positions along each side; 0 when zoomed in.
+        private int level;
+        // The position shown at the top left of the view.
+        private int originRow, originCol;
+        // Where the mouse was pressed, moved on by each drag that panned.
+        private Point dragPoint;
         Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        private BufferedImage fieldImage;
+        // The pixels of the image, row by row.
+        private int[] pixels;
+        // The field shown, or null if none has been shown yet.
+        private Field field;
 
         /**
          * Create a new FieldView component.
@@ -463,6 +480,39 @@ public class SimulatorView extends JFrame implements ActionListener
             gridHeight = height;
             gridWidth = width;
             size = new Dimension(0, 0);
+            // Start zoomed out far enough for the whole field to fit.
+            pixelsPerCell = GRID_VIEW_SCALING_FACTOR;
+            while(pixelsPerCell > 1 && Math.max(width, height) * pixelsPerCell > MAX_PREFERRED_SIZE) {
+                pixelsPerCell /= 2;
+            }
+            while(Math.max(width, height) >> level > MAX_PREFERRED_SIZE) {
+                level++;
+            }
+
+            MouseAdapter mouse = new MouseAdapter() {
+                public void mousePressed(MouseEvent e)
+                {
+                    dragPoint = e.getPoint();
+                }
+
+                public void mouseDragged(MouseEvent e)
+                {
+                    if(dragPoint != null) {
+                        // Only the pixels that made whole positions are used up,
+                        // so slow drags add up until they move the view.
+                        Point used = pan(e.getX() - dragPoint.x, e.getY() - dragPoint.y);
+                        dragPoint.translate(used.x, used.y);
+                    }
+                }
+
+                public void mouseWheelMoved(MouseWheelEvent e)
+                {
+                    zoom(e.getWheelRotation() < 0, e.getX(), e.getY());
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
         }
 
         /**
@@ -470,56 +520,245 @@ public class SimulatorView extends JFrame implements ActionListener
          */
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                gridHeight * GRID_VIEW_SCALING_FACTOR);
+            return new Dimension(Math.min(toPixels(gridWidth), MAX_PREFERRED_SIZE),
+                Math.min(toPixels(gridHeight), MAX_PREFERRED_SIZE));
         }
 
         /**
          * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * may be resized, make a new image when the size changes.
+         * The image is drawn by the simulation and copied to the screen
+         * by the GUI, so it is only touched while holding the view's lock,
+         * as is the viewport, which the mouse moves.
          */
-        public void preparePaint()
+        public synchronized void preparePaint()
         {
             if(! size.equals(getSize())) {  // if the size has changed...
                 size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
+                fieldImage = new BufferedImage(Math.max(size.width, 1), Math.max(size.height, 1),
+                                               BufferedImage.TYPE_INT_RGB);
+                pixels = ((DataBufferInt) fieldImage.getRaster().getDataBuffer()).getData();
+                clampOrigin();
+            }
+        }
+
+        /**
+         * Draw the part of a field in the viewport.
+         * @param field The field to draw.
+         */
+        public synchronized void showField(Field field)
+        {
+            this.field = field;
+            render();
+        }
+
+        /**
+         * Move the viewport by the whole positions in a drag. The field
+         * is drawn there with the next step shown.
+         * @param dx The distance the field is dragged right, in pixels.
+         * @param dy The distance the field is dragged down, in pixels.
+         * @return The part of the drag used, in pixels.
+         */
+        private synchronized Point pan(int dx, int dy)
+        {
+            int cols = toCells(-dx);
+            int rows = toCells(-dy);
+            if(cols != 0 || rows != 0) {
+                originCol += cols;
+                originRow += rows;
+                clampOrigin();
+            }
+            return new Point(-toPixels(cols), -toPixels(rows));
+        }
+
+        /**
+         * Zoom in or out by one step, keeping the position under the
+         * mouse where it is. The field is drawn at the new zoom with the
+         * next step shown.
+         * @param in true to zoom in, false to zoom out.
+         * @param x The x coordinate of the mouse.
+         * @param y The y coordinate of the mouse.
+         */
+        private synchronized void zoom(boolean in, int x, int y)
+        {
+            int row = originRow + toCells(y);
+            int col = originCol + toCells(x);
+            if(in) {
+                if(level > 0) {
+                    level--;
+                }
+                else {
+                    pixelsPerCell = Math.min(pixelsPerCell * 2, MAX_PIXELS_PER_CELL);
+                }
+            }
+            else if(pixelsPerCell > 1) {
+                pixelsPerCell /= 2;
+            }
+            else if(Math.max(gridWidth, gridHeight) >> level > 1) {
+                level++;
+            }
+            originRow = row - toCells(y);
+            originCol = col - toCells(x);
+            clampOrigin();
+        }
 
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
+        /**
+         * Keep the viewport within the field, and on the edges of the
+         * blocks shown when zoomed out.
+         */
+        private void clampOrigin()
+        {
+            originRow = Math.max(0, Math.min(originRow, gridHeight - toCells(size.height)));
+            originCol = Math.max(0, Math.min(originCol, gridWidth - toCells(size.width)));
+            originRow = (originRow >> level) << level;
+            originCol = (originCol >> level) << level;
+        }
+
+        /**
+         * @param pixels A distance in pixels.
+         * @return The same distance in positions at the current zoom.
+         */
+        private int toCells(int pixels)
+        {
+            return (pixels << level) / pixelsPerCell;
+        }
+
+        /**
+         * @param cells A distance in positions.
+         * @return The same distance in pixels at the current zoom.
+         */
+        private int toPixels(int cells)
+        {
+            return (cells >> level) * pixelsPerCell;
+        }
+
+        /**
+         * Draw the field into the image at the current pan and zoom.
+         */
+        private synchronized void render()
+        {
+            preparePaint();
+            if(field == null) {
+                return;
+            }
+            FieldPyramid pyramid = field.getPyramid();
+            if(level == 0) {
+                renderCells();
+            }
+            else if(level >= FieldPyramid.MIN_LEVEL && pyramid != null) {
+                renderBlocks(pyramid);
+            }
+            else {
+                renderSmallBlocks();
+            }
+            repaint();
+        }
+
+        /**
+         * Draw each position in the view as a square of pixels.
+         */
+        private void renderCells()
+        {
+            int background = getBackground().getRGB();
+            // Leave a line between positions when they are big enough.
+            int mark = pixelsPerCell >= 3 ? pixelsPerCell - 1 : pixelsPerCell;
+            for(int y = 0; y < size.height; y++) {
+                int row = originRow + y / pixelsPerCell;
+                boolean rowGap = y % pixelsPerCell >= mark;
+                for(int x = 0; x < size.width; x++) {
+                    int col = originCol + x / pixelsPerCell;
+                    int rgb = background;
+                    if(row < gridHeight && col < gridWidth && !rowGap && x % pixelsPerCell < mark) {
+                        Object animal = field.getObjectAt(row, col);
+                        rgb = animal == null ? EMPTY_COLOR.getRGB() : getColor(animal.getClass()).getRGB();
+                    }
+                    pixels[y * size.width + x] = rgb;
                 }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
+            }
+        }
+
+        /**
+         * Draw each block in the view as a pixel, from the positions in
+         * it. Used for blocks smaller than those of the pyramid.
+         */
+        private void renderSmallBlocks()
+        {
+            int block = 1 << level;
+            for(int y = 0; y < size.height; y++) {
+                for(int x = 0; x < size.width; x++) {
+                    int top = originRow + y * block;
+                    int left = originCol + x * block;
+                    int bottom = Math.min(top + block, gridHeight);
+                    int right = Math.min(left + block, gridWidth);
+                    int red = 0, green = 0, blue = 0, cells = 0;
+                    for(int row = top; row < bottom; row++) {
+                        for(int col = left; col < right; col++) {
+                            Object animal = field.getObjectAt(row, col);
+                            Color color = animal == null ? EMPTY_COLOR : getColor(animal.getClass());
+                            red += color.getRed();
+                            green += color.getGreen();
+                            blue += color.getBlue();
+                            cells++;
+                        }
+                    }
+                    pixels[y * size.width + x] = cells == 0 ? getBackground().getRGB()
+                        : (red / cells) << 16 | (green / cells) << 8 | (blue / cells);
                 }
             }
         }
 
         /**
-         * Paint on grid location on this field in a given color.
+         * Draw each block in the view as a pixel, mixing the colours of
+         * the species in it by their counts in the pyramid.
+         * @param pyramid The field's counts by block.
          */
-        public void drawMark(int x, int y, Color color)
+        private void renderBlocks(FieldPyramid pyramid)
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            Class<?>[] species = pyramid.getSpecies().toArray(new Class<?>[0]);
+            Color[] speciesColors = new Color[species.length];
+            for(int i = 0; i < species.length; i++) {
+                speciesColors[i] = getColor(species[i]);
+            }
+            int blocksDeep = pyramid.getBlocksDeep(level);
+            int blocksWide = pyramid.getBlocksWide(level);
+            for(int y = 0; y < size.height; y++) {
+                int blockRow = (originRow >> level) + y;
+                for(int x = 0; x < size.width; x++) {
+                    int blockCol = (originCol >> level) + x;
+                    if(blockRow >= blocksDeep || blockCol >= blocksWide) {
+                        pixels[y * size.width + x] = getBackground().getRGB();
+                        continue;
+                    }
+                    // Blocks on the far edges may be cut short by the field.
+                    int cells = (Math.min((blockRow + 1) << level, gridHeight) - (blockRow << level))
+                        * (Math.min((blockCol + 1) << level, gridWidth) - (blockCol << level));
+                    int empty = cells;
+                    long red = 0, green = 0, blue = 0;
+                    for(int i = 0; i < species.length; i++) {
+                        int count = pyramid.getCount(species[i], level, blockRow, blockCol);
+                        red += (long) count * speciesColors[i].getRed();
+                        green += (long) count * speciesColors[i].getGreen();
+                        blue += (long) count * speciesColors[i].getBlue();
+                        empty -= count;
+                    }
+                    red += (long) empty * EMPTY_COLOR.getRed();
+                    green += (long) empty * EMPTY_COLOR.getGreen();
+                    blue += (long) empty * EMPTY_COLOR.getBlue();
+                    pixels[y * size.width + x] = (int) (red / cells) << 16
+                        | (int) (green / cells) << 8 | (int) (blue / cells);
+                }
+            }
         }
 
         /**
          * The field view component needs to be redisplayed. Copy the
          * internal image to screen.
          */
-        public void paintComponent(Graphics g)
+        public synchronized void paintComponent(Graphics g)
         {
+            super.paintComponent(g);
             if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
-                }
+                g.drawImage(fieldImage, 0, 0, null);
             }
         }
     }
@@ -0,0 +1,119 @@
+import java.awt.Color;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A numbering of the species in the colours of the simulator's view,
+ * for drawing the field without a display. Each position is given a
+ * one-byte code: 0 for empty, one code for each species with a colour,
+ * and UNKNOWN_CODE for any other occupant.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class SpeciesPalette
+{
+    // The code of a position holding a species with no colour.
+    public static final int UNKNOWN_CODE = 255;
+    // The colour of empty positions.
+    private static final Color EMPTY_COLOR = Color.white;
+    // The colour of species with no colour of their own.
+    private static final Color UNKNOWN_COLOR = Color.gray;
+
+    // The code of each species with a colour.
+    private Map<Class<?>, Integer> codes;
+    // The species with each code from 1.
+    private List<Class<?>> species;
+    // The colour of each code.
+    private int[] rgb;
+
+    /**
+     * Create a palette of the colours of the simulator's view.
+     */
+    public SpeciesPalette()
+    {
+        codes = new HashMap<>();
+        species = new ArrayList<>();
+        rgb = new int[UNKNOWN_CODE + 1];
+        rgb[0] = EMPTY_COLOR.getRGB();
+        for(Map.Entry<Class<?>, Color> entry : Simulator.getSpeciesColors().entrySet()) {
+            int code = codes.size() + 1;
+            codes.put(entry.getKey(), code);
+            species.add(entry.getKey());
+            rgb[code] = entry.getValue().getRGB();
+        }
+        for(int code = codes.size() + 1; code < rgb.length; code++) {
+            rgb[code] = UNKNOWN_COLOR.getRGB();
+        }
+    }
+
+    /**
+     * Return the code of an occupant of a position.
+     * @param occupant The occupant, or null if the position is empty.
+     * @return The code.
+     */
+    public int getCode(Object occupant)
+    {
+        if(occupant == null) {
+            return 0;
+        }
+        return codes.getOrDefault(occupant.getClass(), UNKNOWN_CODE);
+    }
+
+    /**
+     * @return The number of species with codes of their own, which
+     * are numbered from 1.
+     */
+    public int getSpeciesCount()
+    {
+        return species.size();
+    }
+
+    /**
+     * Return the species with a code.
+     * @param code The code, from 1 to getSpeciesCount().
+     * @return The species' class.
+     */
+    public Class<?> getSpecies(int code)
+    {
+        return species.get(code - 1);
+    }
+
+    /**
+     * Return the colour of a code.
+     * @param code The code.
+     * @return The colour, as an RGB value.
+     */
+    public int getRGB(int code)
+    {
+        return rgb[code];
+    }
+
+    /**
+     * Write the code of each position of a field, row by row.
+     * @param field The field.
+     * @param codes The array to hold the codes, with a byte for each position.
+     */
+    public void capture(Field field, byte[] codes)
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                codes[row * width + col] = (byte) getCode(field.getObjectAt(row, col));
+            }
+        }
+    }
+
+    /**
+     * @return A colour model for images holding a code in each pixel.
+     */
+    public IndexColorModel getColorModel()
+    {
+        return new IndexColorModel(8, rgb.length, rgb, 0, false, -1, DataBuffer.TYPE_BYTE);
+    }
+}
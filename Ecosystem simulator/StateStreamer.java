@@ -0,0 +1,388 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams the state of a running simulation to dashboards connected
+ * to a local TCP or Unix-domain socket, as one binary frame per step.
+ *
+ * Each frame gives the step, the time, the weather, the population
+ * of each species and the species in each position. The positions
+ * are sent either whole, in a keyframe, or as the runs of positions
+ * that changed since the previous frame, in a delta frame; both are
+ * run-length encoded, row by row.
+ *
+ * All numbers are big-endian. Each message starts with its length in
+ * bytes, not counting the length itself, and its type:
+ * <ul>
+ * <li>HELLO, sent on connecting: the depth and width of the field,
+ * the number of species, and for each species code from 1 its name
+ * (a short length and that many bytes of UTF-8).</li>
+ * <li>KEYFRAME and DELTA: the step, the time, the weather (as a short
+ * length and UTF-8), the number of species and the population of each
+ * code from 1, then the number of runs. A keyframe run is a length
+ * and the code shared by every position in it. A delta run is the
+ * number of positions unchanged since the previous frame, the number
+ * changed, and the new code of each changed position.</li>
+ * </ul>
+ *
+ * Frames are built once, in a direct buffer, and written to every
+ * client without copying. Writes never block the simulation: a client
+ * that cannot take a whole frame keeps the rest of it, skips frames
+ * until it has caught up, and is then sent a keyframe.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class StateStreamer implements AutoCloseable
+{
+    // The types of message.
+    public static final byte HELLO = 0;
+    public static final byte KEYFRAME = 1;
+    public static final byte DELTA = 2;
+    // The number of steps between keyframes sent to every client.
+    private static final int KEYFRAME_INTERVAL = 100;
+
+    // The socket on which clients connect.
+    private ServerSocketChannel server;
+    // The file of a Unix-domain socket, or null for TCP.
+    private UnixDomainSocketAddress socketFile;
+    // The clients connected.
+    private List<Client> clients;
+    // The code and colour of each species.
+    private SpeciesPalette palette;
+    // The codes of the positions in this frame and the previous one.
+    private byte[] codes, previousCodes;
+    // The last keyframe and delta frame built.
+    private ByteBuffer keyframe, delta;
+
+    /**
+     * Start listening for dashboards on a local address.
+     * @param address An InetSocketAddress for TCP, such as port 7070
+     * on the loopback address, or a UnixDomainSocketAddress.
+     * @throws IOException If the socket cannot be opened.
+     */
+    public StateStreamer(SocketAddress address) throws IOException
+    {
+        if(address instanceof UnixDomainSocketAddress) {
+            socketFile = (UnixDomainSocketAddress) address;
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        }
+        else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        server.configureBlocking(false);
+        clients = new ArrayList<>();
+        palette = new SpeciesPalette();
+        keyframe = ByteBuffer.allocateDirect(1 << 16);
+        delta = ByteBuffer.allocateDirect(1 << 16);
+    }
+
+    /**
+     * @return The address on which dashboards connect.
+     * @throws IOException If the socket has been closed.
+     */
+    public SocketAddress getAddress() throws IOException
+    {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * @return The number of dashboards connected.
+     */
+    public int getClientCount()
+    {
+        return clients.size();
+    }
+
+    /**
+     * Send a frame of the field at a step to every dashboard that is
+     * keeping up, after accepting any new connections.
+     * @param field The field.
+     * @param step The step.
+     * @param time The time of day.
+     * @param weather The weather.
+     */
+    public void publish(Field field, int step, int time, String weather)
+    {
+        int size = field.getDepth() * field.getWidth();
+        if(codes == null || codes.length != size) {
+            codes = new byte[size];
+            previousCodes = null;
+        }
+        acceptClients(field);
+        byte[] swap = previousCodes;
+        previousCodes = codes;
+        codes = swap != null ? swap : new byte[size];
+        palette.capture(field, codes);
+
+        // Everyone is sent a keyframe from time to time, in case of bugs
+        // in a dashboard, and when there is no previous frame.
+        boolean keyframeStep = swap == null || step % KEYFRAME_INTERVAL == 0;
+        boolean keyframeBuilt = false;
+        boolean deltaBuilt = false;
+        Iterator<Client> it = clients.iterator();
+        while(it.hasNext()) {
+            Client client = it.next();
+            flush(client);
+            if(client.pending != null) {
+                // Still sending an earlier frame, so this one is skipped.
+                continue;
+            }
+            ByteBuffer frame;
+            if(keyframeStep || client.needsKeyframe) {
+                if(!keyframeBuilt) {
+                    keyframe = buildFrame(keyframe, KEYFRAME, step, time, weather);
+                    keyframeBuilt = true;
+                }
+                frame = keyframe.duplicate();
+            }
+            else {
+                if(!deltaBuilt) {
+                    delta = buildFrame(delta, DELTA, step, time, weather);
+                    deltaBuilt = true;
+                }
+                frame = delta.duplicate();
+            }
+            client.needsKeyframe = false;
+            if(!send(client, frame)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Disconnect every dashboard and stop listening.
+     * @throws IOException If the socket cannot be closed.
+     */
+    public void close() throws IOException
+    {
+        for(Client client : clients) {
+            client.channel.close();
+        }
+        clients.clear();
+        server.close();
+        if(socketFile != null) {
+            Files.deleteIfExists(socketFile.getPath());
+        }
+    }
+
+    /**
+     * Accept any dashboards waiting to connect, and greet them.
+     * @param field The field being streamed.
+     */
+    private void acceptClients(Field field)
+    {
+        try {
+            SocketChannel channel = server.accept();
+            while(channel != null) {
+                channel.configureBlocking(false);
+                Client client = new Client(channel);
+                if(send(client, buildHello(field))) {
+                    clients.add(client);
+                }
+                channel = server.accept();
+            }
+        }
+        catch(IOException e) {
+            // The dashboard went away while connecting.
+        }
+    }
+
+    /**
+     * Write as much of a frame to a client as it will take. Whatever it
+     * does not take is copied, as the frame's buffer will be reused.
+     * @param client The client.
+     * @param frame The frame.
+     * @return false if the client has gone.
+     */
+    private boolean send(Client client, ByteBuffer frame)
+    {
+        try {
+            client.channel.write(frame);
+        }
+        catch(IOException e) {
+            closeQuietly(client);
+            return false;
+        }
+        if(frame.hasRemaining()) {
+            ByteBuffer rest = ByteBuffer.allocateDirect(frame.remaining());
+            rest.put(frame).flip();
+            client.pending = rest;
+            // The frames skipped while this is sent are made up by a keyframe.
+            client.needsKeyframe = true;
+        }
+        return true;
+    }
+
+    /**
+     * Write more of the rest of a frame that a client did not take.
+     * @param client The client.
+     */
+    private void flush(Client client)
+    {
+        if(client.pending == null) {
+            return;
+        }
+        try {
+            client.channel.write(client.pending);
+            if(!client.pending.hasRemaining()) {
+                client.pending = null;
+            }
+        }
+        catch(IOException e) {
+            // The client is removed on the next send.
+            closeQuietly(client);
+            client.pending = null;
+        }
+    }
+
+    /**
+     * Build the greeting sent to a new client.
+     * @param field The field being streamed.
+     * @return The greeting, ready to be written.
+     */
+    private ByteBuffer buildHello(Field field)
+    {
+        ByteBuffer hello = ByteBuffer.allocate(1 << 12);
+        hello.putInt(0).put(HELLO);
+        hello.putInt(field.getDepth()).putInt(field.getWidth());
+        hello.put((byte) palette.getSpeciesCount());
+        for(int code = 1; code <= palette.getSpeciesCount(); code++) {
+            putString(hello, palette.getSpecies(code).getName());
+        }
+        hello.putInt(0, hello.position() - Integer.BYTES);
+        return hello.flip();
+    }
+
+    /**
+     * Build a keyframe or a delta frame of the current codes.
+     * @param buffer The buffer to build it in, which may be replaced
+     * by a larger one.
+     * @param type KEYFRAME or DELTA.
+     * @param step The step.
+     * @param time The time of day.
+     * @param weather The weather.
+     * @return The buffer holding the frame, ready to be written.
+     */
+    private ByteBuffer buildFrame(ByteBuffer buffer, byte type, int step, int time, String weather)
+    {
+        int speciesCount = palette.getSpeciesCount();
+        int[] populations = new int[speciesCount + 1];
+        for(byte code : codes) {
+            int c = code & 0xff;
+            if(c >= 1 && c <= speciesCount) {
+                populations[c]++;
+            }
+        }
+
+        buffer.clear();
+        buffer.putInt(0).put(type).putInt(step).putInt(time);
+        putString(buffer, weather);
+        buffer.put((byte) speciesCount);
+        for(int code = 1; code <= speciesCount; code++) {
+            buffer.putInt(populations[code]);
+        }
+        int runCountAt = buffer.position();
+        buffer.putInt(0);
+        int runs = 0;
+        int i = 0;
+        while(i < codes.length) {
+            int start = i;
+            if(type == KEYFRAME) {
+                while(i < codes.length && codes[i] == codes[start]) {
+                    i++;
+                }
+                buffer = ensureRoom(buffer, Integer.BYTES + 1);
+                buffer.putInt(i - start).put(codes[start]);
+            }
+            else {
+                while(i < codes.length && codes[i] == previousCodes[i]) {
+                    i++;
+                }
+                int changed = i;
+                while(i < codes.length && codes[i] != previousCodes[i]) {
+                    i++;
+                }
+                buffer = ensureRoom(buffer, 2 * Integer.BYTES + i - changed);
+                buffer.putInt(changed - start).putInt(i - changed).put(codes, changed, i - changed);
+            }
+            runs++;
+        }
+        buffer.putInt(runCountAt, runs);
+        buffer.putInt(0, buffer.position() - Integer.BYTES);
+        return buffer.flip();
+    }
+
+    /**
+     * Make sure there is room in a buffer, moving its contents to a
+     * larger buffer if there is not.
+     * @param buffer The buffer.
+     * @param bytes The number of bytes needed.
+     * @return The buffer, or a larger one with the same contents.
+     */
+    private static ByteBuffer ensureRoom(ByteBuffer buffer, int bytes)
+    {
+        if(buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Write a string as a short length and UTF-8 bytes.
+     * @param buffer The buffer to write to.
+     * @param text The string.
+     */
+    private static void putString(ByteBuffer buffer, String text)
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Close a client's connection, ignoring errors.
+     * @param client The client.
+     */
+    private static void closeQuietly(Client client)
+    {
+        try {
+            client.channel.close();
+        }
+        catch(IOException e) {
+            // Already closed.
+        }
+    }
+
+    /**
+     * A connected dashboard.
+     */
+    private static class Client
+    {
+        // The connection to the dashboard.
+        private final SocketChannel channel;
+        // The rest of a frame it has not yet taken, or null.
+        private ByteBuffer pending;
+        // Whether its next frame must be a keyframe.
+        private boolean needsKeyframe;
+
+        private Client(SocketChannel channel)
+        {
+            this.channel = channel;
+            needsKeyframe = true;
+        }
+    }
+}
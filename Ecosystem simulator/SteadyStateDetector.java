@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Watches the population of each species step by step and decides
+ * when the simulation has settled into a steady state, so that a run
+ * need not go on for a fixed number of steps after nothing is left to
+ * learn from it.
+ *
+ * The last two windows of steps are compared for every species. The
+ * simulation is steady when, for each species, the mean population of
+ * the newer window is within a tolerance of the older one's and the
+ * variances of the two are within a ratio of each other. The windows
+ * should be long enough to hold several days and weather changes, so
+ * that the regular swings of a settled population look the same in
+ * both. The test has to pass for a number of steps running before the
+ * steady state is reported, so that a chance match is not taken for
+ * one.
+ *
+ * The sums behind each mean and variance are kept up to date as
+ * values enter and leave the windows, so each step costs a few
+ * operations per species however long the windows are.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class SteadyStateDetector
+{
+    /**
+     * What a simulator does once the steady state is reached.
+     */
+    public enum Action
+    {
+        // End the run.
+        STOP,
+        // Carry on, but draw and record only every few steps.
+        SAMPLE
+    }
+
+    // The default number of steps in each window: over five days.
+    private static final int DEFAULT_WINDOW = 400;
+    // The default largest change in mean, as a fraction of the larger mean.
+    private static final double DEFAULT_MEAN_TOLERANCE = 0.05;
+    // The default largest ratio between the variances.
+    private static final double DEFAULT_VARIANCE_RATIO = 2.0;
+    // The default number of steps the test must pass running.
+    private static final int DEFAULT_CONFIRM_STEPS = 50;
+
+    // The number of steps in each window.
+    private int window;
+    // The largest change in mean, as a fraction of the larger mean.
+    private double meanTolerance;
+    // The largest ratio between the variances.
+    private double varianceRatio;
+    // The number of steps the test must pass running.
+    private int confirmSteps;
+    // The species watched.
+    private List<Class<?>> species;
+    // The populations of each species over both windows, by step.
+    private int[][] history;
+    // The sums of the populations, and of their squares, in the older
+    // and newer windows, for each species.
+    private long[] olderSum, olderSquares, newerSum, newerSquares;
+    // The number of steps recorded.
+    private int recorded;
+    // The number of steps the test has passed running.
+    private int passed;
+    // The step at which the steady state was reported, or -1.
+    private int steadyStep;
+
+    /**
+     * Create a detector with the default windows and tolerances.
+     */
+    public SteadyStateDetector()
+    {
+        this(DEFAULT_WINDOW, DEFAULT_MEAN_TOLERANCE, DEFAULT_VARIANCE_RATIO, DEFAULT_CONFIRM_STEPS);
+    }
+
+    /**
+     * Create a detector.
+     * @param window The number of steps in each window.
+     * @param meanTolerance The largest change in mean population
+     * between the windows, as a fraction of the larger mean.
+     * @param varianceRatio The largest ratio between the variances of
+     * the windows, at least 1.
+     * @param confirmSteps The number of steps the test must pass
+     * running before the steady state is reported.
+     */
+    public SteadyStateDetector(int window, double meanTolerance, double varianceRatio, int confirmSteps)
+    {
+        if(window < 2 || varianceRatio < 1) {
+            throw new IllegalArgumentException("A window needs two steps, and a variance ratio at least 1");
+        }
+        this.window = window;
+        this.meanTolerance = meanTolerance;
+        this.varianceRatio = varianceRatio;
+        this.confirmSteps = Math.max(1, confirmSteps);
+        species = new ArrayList<>(Simulator.getSpeciesColors().keySet());
+        history = new int[species.size()][2 * window];
+        olderSum = new long[species.size()];
+        olderSquares = new long[species.size()];
+        newerSum = new long[species.size()];
+        newerSquares = new long[species.size()];
+        steadyStep = -1;
+    }
+
+    /**
+     * Forget everything recorded, to watch a new run.
+     */
+    public void reset()
+    {
+        for(int[] populations : history) {
+            Arrays.fill(populations, 0);
+        }
+        Arrays.fill(olderSum, 0);
+        Arrays.fill(olderSquares, 0);
+        Arrays.fill(newerSum, 0);
+        Arrays.fill(newerSquares, 0);
+        recorded = 0;
+        passed = 0;
+        steadyStep = -1;
+    }
+
+    /**
+     * Record the populations at the end of a step.
+     * @param field The field. Its pyramid is turned on if it is off.
+     * @param step The step.
+     * @return true if the steady state is reached at this step, false
+     * if it is not, or was already reached.
+     */
+    public boolean record(Field field, int step)
+    {
+        if(field.getPyramid() == null) {
+            field.setPyramidEnabled(true);
+        }
+        FieldPyramid pyramid = field.getPyramid();
+        int slot = recorded % (2 * window);
+        // The step leaving the newer window for the older one.
+        int middle = (recorded + window) % (2 * window);
+        for(int s = 0; s < species.size(); s++) {
+            int[] populations = history[s];
+            if(recorded >= 2 * window) {
+                long leaving = populations[slot];
+                olderSum[s] -= leaving;
+                olderSquares[s] -= leaving * leaving;
+            }
+            if(recorded >= window) {
+                long moving = populations[middle];
+                newerSum[s] -= moving;
+                newerSquares[s] -= moving * moving;
+                olderSum[s] += moving;
+                olderSquares[s] += moving * moving;
+            }
+            long population = pyramid.getTotal(species.get(s));
+            populations[slot] = (int) population;
+            newerSum[s] += population;
+            newerSquares[s] += population * population;
+        }
+        recorded++;
+
+        if(steadyStep >= 0 || recorded < 2 * window) {
+            return false;
+        }
+        passed = isStationary() ? passed + 1 : 0;
+        if(passed >= confirmSteps) {
+            steadyStep = step;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true once the steady state has been reached.
+     */
+    public boolean isSteady()
+    {
+        return steadyStep >= 0;
+    }
+
+    /**
+     * @return The step at which the steady state was reported, or -1
+     * if it has not been. The populations were steady over the two
+     * windows before it.
+     */
+    public int getSteadyStep()
+    {
+        return steadyStep;
+    }
+
+    /**
+     * Compare the two windows for every species.
+     * @return true if no species' mean or variance has changed by more
+     * than is allowed.
+     */
+    private boolean isStationary()
+    {
+        for(int s = 0; s < species.size(); s++) {
+            double olderMean = (double) olderSum[s] / window;
+            double newerMean = (double) newerSum[s] / window;
+            if(Math.abs(newerMean - olderMean) > meanTolerance * Math.max(1, Math.max(olderMean, newerMean))) {
+                return false;
+            }
+            double olderVariance = olderSquares[s] / (double) window - olderMean * olderMean;
+            double newerVariance = newerSquares[s] / (double) window - newerMean * newerMean;
+            // A variance under one is a population that barely moves.
+            double smaller = Math.max(1, Math.min(olderVariance, newerVariance));
+            double larger = Math.max(1, Math.max(olderVariance, newerVariance));
+            if(larger > varianceRatio * smaller) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
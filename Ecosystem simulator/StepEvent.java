@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one step of the simulation. Its
+ * duration is the time taken by the step, so recordings can relate
+ * pauses and allocation to what the ecosystem was doing at the time.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+@Name("savannah.Step")
+@Label("Simulation Step")
+@Category("Savannah")
+@Description("One step of the simulation")
+public class StepEvent extends jdk.jfr.Event
+{
+    @Label("Step")
+    int step;
+
+    @Label("Time of Day")
+    int timeOfDay;
+
+    @Label("Weather")
+    String weather;
+
+    @Label("Actors")
+    int actorCount;
+
+    @Label("Births")
+    int births;
+
+    @Label("Deaths")
+    int deaths;
+}
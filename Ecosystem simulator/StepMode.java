@@ -0,0 +1,15 @@
+/**
+ * The ways in which the simulator can step its actors.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public enum StepMode
+{
+    // Every actor acts on every step, in the order they were added.
+    EVERY_STEP,
+    // Actors only act on the steps of their scheduled events.
+    EVENT_DRIVEN,
+    // Each group of species acts at its own rate.
+    MULTI_RATE
+}
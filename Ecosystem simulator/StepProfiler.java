@@ -0,0 +1,260 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures where the time of each simulation step goes. Each step is
+ * split into phases, timed with the monotonic clock, and the time
+ * spent by actors acting is split into the acts of plants, of prey
+ * and of predators, and further broken down by species. Timings are
+ * kept for a sliding window of recent steps, from which median and
+ * tail percentiles are reported.
+ *
+ * Timing every act would cost as much as some of the acts themselves,
+ * so only one act in ACT_SAMPLE_RATE is timed, starting with the first
+ * of each step. The acts of the groups are interleaved on a step, so
+ * the measured time of all the acts, removals of the dead included, is
+ * shared between the groups, and between species, in proportion to the
+ * sampled times. This works the same whichever way the actors are
+ * stepped. When profiling is off the simulator holds no profiler and
+ * pays only a null check per phase.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class StepProfiler
+{
+    // The phases of a step.
+    public static final int CLOCK = 0;
+    public static final int EXPIRY = 1;
+    public static final int PLANT_ACT = 2;
+    public static final int PREY_ACT = 3;
+    public static final int PREDATOR_ACT = 4;
+    public static final int MERGE = 5;
+    public static final int DIFFUSION = 6;
+    public static final int STATS = 7;
+    public static final int RENDER = 8;
+    // The names of the phases, for reports.
+    private static final String[] PHASE_NAMES = {
+        "clock and weather", "old age", "plant acts", "prey acts",
+        "predator acts", "newborn merge", "diffusion", "stats", "render"
+    };
+
+    // The number of recent steps kept.
+    private static final int WINDOW = 256;
+    // One in this many acts is timed.
+    private static final int ACT_SAMPLE_RATE = 16;
+
+    // The time spent in each phase, for each step in the window.
+    private long[][] phaseTimes;
+    // The estimated act time of each species, for each step in the window.
+    private Map<Class<?>, long[]> speciesTimes;
+    // The sampled act time of each species in the current step.
+    private Map<Class<?>, long[]> sampledTimes;
+    // The number of steps started.
+    private int steps;
+    // The position of the current step in the window.
+    private int slot;
+    // The time at which the current phase started.
+    private long mark;
+    // The time spent acting in the current step.
+    private long actTime;
+    // The number of acts seen in the current step, for sampling.
+    private int acts;
+
+    /**
+     * Create a profiler with no timings.
+     */
+    public StepProfiler()
+    {
+        phaseTimes = new long[PHASE_NAMES.length][WINDOW];
+        speciesTimes = new LinkedHashMap<>();
+        sampledTimes = new HashMap<>();
+        steps = 0;
+        slot = -1;
+    }
+
+    /**
+     * Start timing a new step.
+     */
+    public void beginStep()
+    {
+        slot = steps % WINDOW;
+        steps++;
+        for(long[] times : phaseTimes) {
+            times[slot] = 0;
+        }
+        for(long[] times : speciesTimes.values()) {
+            times[slot] = 0;
+        }
+        sampledTimes.clear();
+        actTime = 0;
+        acts = 0;
+        mark = System.nanoTime();
+    }
+
+    /**
+     * End the current phase, charging the time since the previous
+     * phase ended to it.
+     * @param phase The phase that has ended.
+     */
+    public void endPhase(int phase)
+    {
+        long now = System.nanoTime();
+        phaseTimes[phase][slot] += now - mark;
+        mark = now;
+    }
+
+    /**
+     * End the acts of the step, whose time is shared between the
+     * plant, prey and predator act phases when the step ends.
+     */
+    public void endActs()
+    {
+        long now = System.nanoTime();
+        actTime += now - mark;
+        mark = now;
+    }
+
+    /**
+     * Charge time to a phase of the most recent step, for work that
+     * is done outside the step itself.
+     * @param phase The phase.
+     * @param nanos The time spent, in nanoseconds.
+     */
+    public void addTime(int phase, long nanos)
+    {
+        if(slot >= 0) {
+            phaseTimes[phase][slot] += nanos;
+        }
+    }
+
+    /**
+     * Decide whether the next act should be timed.
+     * @return true if the act should be timed.
+     */
+    public boolean sampleAct()
+    {
+        return acts++ % ACT_SAMPLE_RATE == 0;
+    }
+
+    /**
+     * Record the time of a sampled act.
+     * @param species The class of the actor that acted.
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void recordAct(Class<?> species, long nanos)
+    {
+        long[] total = sampledTimes.get(species);
+        if(total == null) {
+            total = new long[1];
+            sampledTimes.put(species, total);
+        }
+        total[0] += nanos;
+    }
+
+    /**
+     * Finish the current step, sharing its act time between the
+     * species groups and between species.
+     */
+    public void endStep()
+    {
+        long sampled = 0;
+        for(long[] total : sampledTimes.values()) {
+            sampled += total[0];
+        }
+        if(sampled == 0) {
+            // Nothing acted, so the little time taken is left uncharged.
+            return;
+        }
+        for(Map.Entry<Class<?>, long[]> entry : sampledTimes.entrySet()) {
+            long share = actTime * entry.getValue()[0] / sampled;
+            phaseTimes[getActPhase(entry.getKey())][slot] += share;
+            long[] times = speciesTimes.get(entry.getKey());
+            if(times == null) {
+                times = new long[WINDOW];
+                speciesTimes.put(entry.getKey(), times);
+            }
+            times[slot] = share;
+        }
+    }
+
+    /**
+     * Describe the timings of the recent steps: the median, 90th and
+     * 99th percentile time of each phase and of each species' acts,
+     * in microseconds.
+     * @return A table of timings.
+     */
+    public String getReport()
+    {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append(String.format("%-20s %10s %10s %10s%n", "phase (us)", "p50", "p90", "p99"));
+        for(int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            appendRow(buffer, PHASE_NAMES[phase], phaseTimes[phase]);
+        }
+        for(Map.Entry<Class<?>, long[]> entry : speciesTimes.entrySet()) {
+            appendRow(buffer, "  " + entry.getKey().getName(), entry.getValue());
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Return a percentile of the recent timings of a phase.
+     * @param phase The phase.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The timing at that percentile, in nanoseconds.
+     */
+    public long getPercentile(int phase, double percentile)
+    {
+        return percentile(phaseTimes[phase], percentile);
+    }
+
+    /**
+     * Find the act phase of a species' group.
+     * @param species The class of an actor.
+     * @return PLANT_ACT, PREY_ACT or PREDATOR_ACT; any other actor is
+     * counted with the predators.
+     */
+    private static int getActPhase(Class<?> species)
+    {
+        if(Plant.class.isAssignableFrom(species)) {
+            return PLANT_ACT;
+        }
+        if(Prey.class.isAssignableFrom(species)) {
+            return PREY_ACT;
+        }
+        return PREDATOR_ACT;
+    }
+
+    /**
+     * Add a row of percentiles to a report.
+     * @param buffer The report.
+     * @param name The name of the row.
+     * @param times The timings of the row.
+     */
+    private void appendRow(StringBuffer buffer, String name, long[] times)
+    {
+        buffer.append(String.format("%-20s %10.1f %10.1f %10.1f%n", name,
+            percentile(times, 50) / 1000.0, percentile(times, 90) / 1000.0,
+            percentile(times, 99) / 1000.0));
+    }
+
+    /**
+     * Return a percentile of the timings in the window.
+     * @param times The timings.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The timing at that percentile, in nanoseconds.
+     */
+    private long percentile(long[] times, double percentile)
+    {
+        int count = Math.min(steps, WINDOW);
+        if(count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(times, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+}
@@ -0,0 +1,288 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws the field as square PNG map tiles at several zoom levels,
+ * without a display, for a web viewer or a report to browse a run.
+ *
+ * At the deepest zoom each pixel of a tile is one position; each zoom
+ * level above it halves the scale, down to zoom 0, where one tile
+ * covers the whole field. Tiles are named by step, zoom and the
+ * column and row of the tile, and are drawn in the colours of the
+ * simulator's view.
+ *
+ * The state of the field is captured at the end of the steps to be
+ * shown, as one byte per position, and tiles are drawn from these
+ * captures and encoded on a pool of worker threads. Encoded tiles are
+ * kept in a cache of bounded size, dropping those least recently
+ * used; only the most recent captures are kept, so tiles of the
+ * coarser zoom levels can be drawn as soon as a step is captured and
+ * stay in the cache after its capture has gone.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class TileRenderer implements AutoCloseable
+{
+    // The number of pixels along the side of a tile.
+    public static final int TILE_SIZE = 256;
+    // The colour of pixels beyond the field.
+    private static final Color EMPTY_COLOR = Color.white;
+
+    // The depth and width of the field.
+    private int depth, width;
+    // The deepest zoom level, at which a pixel is a position.
+    private int maxZoom;
+    // The code and colour of each species.
+    private SpeciesPalette palette;
+    // The number of captures kept.
+    private int capturesKept;
+    // The captures of the field, by step, oldest first.
+    private LinkedHashMap<Integer, byte[]> captures;
+    // The tiles drawn or being drawn, least recently used first.
+    private LinkedHashMap<TileKey, CompletableFuture<byte[]>> cache;
+    // The number of tiles cached.
+    private int cacheSize;
+    // The deepest zoom drawn as soon as a step is captured, or -1.
+    private int prerenderZoom;
+    // The threads drawing and encoding the tiles.
+    private ExecutorService workers;
+
+    /**
+     * Create a renderer for a field of the given size, using the
+     * colours of the simulator's view.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param cacheSize The largest number of tiles to cache.
+     * @param capturesKept The number of captured steps to keep.
+     * @param threads The number of worker threads.
+     */
+    public TileRenderer(int depth, int width, int cacheSize, int capturesKept, int threads)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.cacheSize = cacheSize;
+        this.capturesKept = capturesKept;
+        maxZoom = 0;
+        while((Math.max(depth, width) - 1) >> maxZoom >= TILE_SIZE) {
+            maxZoom++;
+        }
+        palette = new SpeciesPalette();
+        captures = new LinkedHashMap<>();
+        cache = new LinkedHashMap<>(16, 0.75f, true);
+        prerenderZoom = -1;
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tile-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Draw the tiles of every zoom level up to the given one as soon as
+     * a step is captured, so that they are cached before the capture
+     * is dropped.
+     * @param zoom The deepest zoom level to draw, or -1 for none.
+     */
+    public void setPrerenderZoom(int zoom)
+    {
+        prerenderZoom = Math.min(zoom, maxZoom);
+    }
+
+    /**
+     * @return The deepest zoom level, at which a pixel is a position.
+     */
+    public int getMaxZoom()
+    {
+        return maxZoom;
+    }
+
+    /**
+     * Capture the state of the field at a step, so that its tiles can
+     * be drawn. The oldest capture is dropped if too many are kept.
+     * @param field The field.
+     * @param step The step.
+     */
+    public void capture(Field field, int step)
+    {
+        byte[] capture = new byte[depth * width];
+        palette.capture(field, capture);
+        synchronized(this) {
+            captures.put(step, capture);
+            Iterator<Integer> oldest = captures.keySet().iterator();
+            while(captures.size() > capturesKept) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        for(int zoom = 0; zoom <= prerenderZoom; zoom++) {
+            int tiles = 1 << zoom;
+            for(int y = 0; y < tiles && (y << (maxZoom - zoom)) * TILE_SIZE < depth; y++) {
+                for(int x = 0; x < tiles && (x << (maxZoom - zoom)) * TILE_SIZE < width; x++) {
+                    getTile(step, zoom, x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a tile as a PNG image. The tile is taken from the cache, or
+     * else drawn and encoded on a worker thread.
+     * @param step The step shown.
+     * @param zoom The zoom level, from 0 to getMaxZoom().
+     * @param x The column of the tile.
+     * @param y The row of the tile.
+     * @return The encoded tile, once it is ready. The result fails if
+     * the step is neither cached nor captured.
+     */
+    public synchronized CompletableFuture<byte[]> getTile(int step, int zoom, int x, int y)
+    {
+        if(zoom < 0 || zoom > maxZoom || x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom) {
+            throw new IllegalArgumentException("No tile " + zoom + "/" + x + "/" + y);
+        }
+        TileKey key = new TileKey(step, zoom, x, y);
+        CompletableFuture<byte[]> tile = cache.get(key);
+        if(tile != null) {
+            return tile;
+        }
+        byte[] capture = captures.get(step);
+        if(capture == null) {
+            return CompletableFuture.failedFuture(
+                new IllegalArgumentException("Step " + step + " has not been captured"));
+        }
+        CompletableFuture<byte[]> drawn = CompletableFuture.supplyAsync(
+            () -> encode(draw(capture, zoom, x, y)), workers);
+        cache.put(key, drawn);
+        // Failed tiles are not kept, so they may be asked for again.
+        drawn.whenComplete((image, failure) -> {
+            if(failure != null) {
+                removeTile(key, drawn);
+            }
+        });
+        Iterator<CompletableFuture<byte[]>> eldest = cache.values().iterator();
+        while(cache.size() > cacheSize) {
+            eldest.next();
+            eldest.remove();
+        }
+        return drawn;
+    }
+
+    /**
+     * Stop the worker threads. Tiles still being drawn are abandoned.
+     */
+    public void close()
+    {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Remove a tile from the cache, unless it has since been replaced.
+     * @param key The tile's key.
+     * @param tile The tile to remove.
+     */
+    private synchronized void removeTile(TileKey key, CompletableFuture<byte[]> tile)
+    {
+        cache.remove(key, tile);
+    }
+
+    /**
+     * Draw a tile from a capture.
+     * @param capture The capture of the field.
+     * @param zoom The zoom level.
+     * @param x The column of the tile.
+     * @param y The row of the tile.
+     * @return The tile.
+     */
+    private BufferedImage draw(byte[] capture, int zoom, int x, int y)
+    {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        // Each pixel shows a block of positions, 2^shift along each side.
+        int shift = maxZoom - zoom;
+        int block = 1 << shift;
+        for(int py = 0; py < TILE_SIZE; py++) {
+            int top = ((y * TILE_SIZE + py) << shift);
+            for(int px = 0; px < TILE_SIZE; px++) {
+                int left = ((x * TILE_SIZE + px) << shift);
+                int bottom = Math.min(top + block, depth);
+                int right = Math.min(left + block, width);
+                if(top >= bottom || left >= right) {
+                    pixels[py * TILE_SIZE + px] = EMPTY_COLOR.getRGB();
+                    continue;
+                }
+                int red = 0, green = 0, blue = 0;
+                for(int row = top; row < bottom; row++) {
+                    for(int col = left; col < right; col++) {
+                        int color = palette.getRGB(capture[row * width + col] & 0xff);
+                        red += (color >> 16) & 0xff;
+                        green += (color >> 8) & 0xff;
+                        blue += color & 0xff;
+                    }
+                }
+                int cells = (bottom - top) * (right - left);
+                pixels[py * TILE_SIZE + px] = (red / cells) << 16 | (green / cells) << 8 | (blue / cells);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Encode a tile as a PNG image.
+     * @param image The tile.
+     * @return The encoded tile.
+     */
+    private static byte[] encode(BufferedImage image)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The name of a tile: its step, zoom level, column and row.
+     */
+    private static class TileKey
+    {
+        private final int step, zoom, x, y;
+
+        private TileKey(int step, int zoom, int x, int y)
+        {
+            this.step = step;
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if(!(other instanceof TileKey)) {
+                return false;
+            }
+            TileKey key = (TileKey) other;
+            return step == key.step && zoom == key.zoom && x == key.x && y == key.y;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(step, zoom, x, y);
+        }
+    }
+}
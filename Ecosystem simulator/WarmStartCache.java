@@ -0,0 +1,319 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A store on disk of simulations that have already been run through
+ * their first steps, so that experiments which all begin with the same
+ * transient after populating the field can start after it instead of
+ * running it again.
+ *
+ * A state is kept under a key that is a hash of everything that
+ * decides it: the size of the field, the seed, the number of burn-in
+ * steps, the probability of creating each species and the value of
+ * every other parameter set. The first experiment with a key runs the
+ * burn-in and saves the state; later ones load it. Either way the
+ * simulation carries on exactly as it would have from the start.
+ *
+ * Once the states take more than a set number of bytes, the ones
+ * least recently used are removed. Several JVMs may share a directory:
+ * states are written to a temporary file and then moved into place,
+ * and one that disappears while being looked up is simply run again.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+public class WarmStartCache
+{
+    // The start of every file, followed by the description of its key.
+    private static final int MAGIC = 0x53415653;
+    // Changed whenever a saved state would no longer load the same.
+    private static final int FORMAT_VERSION = 1;
+    // The ending of the name of every state file.
+    private static final String SUFFIX = ".state";
+
+    // The directory holding the states.
+    private Path directory;
+    // The most bytes the states may take.
+    private long maxBytes;
+    // The number of starts from a saved state, and from the beginning.
+    private int hits, misses;
+
+    /**
+     * Create a cache in a directory, which is made if need be.
+     * @param directory The directory.
+     * @param maxBytes The most bytes the states may take.
+     * @throws IOException If the directory cannot be made.
+     */
+    public WarmStartCache(Path directory, long maxBytes) throws IOException
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Get a simulation at the end of its burn-in, loading it if it has
+     * been saved and running and saving it if it has not. The shared
+     * random number generator is left as it would be after the burn-in.
+     * @param field An empty field for the simulation.
+     * @param seed The seed the simulation starts from.
+     * @param burnIn The number of steps to run before the experiment.
+     * @param probabilities The probability of creating each species,
+     * as given to the simulator.
+     * @param parameters The name and value of every other parameter
+     * already set, which affect the burn-in but cannot be seen here.
+     * @return The simulation, without a view.
+     */
+    public Simulator start(Field field, long seed, int burnIn,
+                           Map<Class<?>, Double> probabilities, Map<String, Double> parameters)
+    {
+        String description = describe(field, seed, burnIn, probabilities, parameters);
+        Path file = directory.resolve(hash(description) + SUFFIX);
+        Randomizer.reset(seed);
+        Simulator simulator = new Simulator(field, false, probabilities);
+        try {
+            if(load(simulator, file, description)) {
+                hits++;
+                return simulator;
+            }
+        }
+        catch(IOException e) {
+            // A damaged state is run again and replaced.
+            Randomizer.reset(seed);
+            simulator = new Simulator(field, false, probabilities);
+        }
+        misses++;
+        for(int step = 0; step < burnIn; step++) {
+            simulator.simulateOneStep();
+        }
+        try {
+            save(simulator, file, description);
+            evict(file);
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException("Cannot save the warm start " + file, e);
+        }
+        return simulator;
+    }
+
+    /**
+     * @return The number of simulations started from a saved state.
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return The number of simulations whose burn-in was run.
+     */
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return The number of bytes the states take.
+     * @throws IOException If the directory cannot be read.
+     */
+    public long getSize() throws IOException
+    {
+        long size = 0;
+        for(Path file : listStates()) {
+            size += sizeOf(file);
+        }
+        return size;
+    }
+
+    /**
+     * Load a saved state into a simulator, and mark it as used.
+     * @param simulator The simulator.
+     * @param file The file of the state.
+     * @param description The description of its key.
+     * @return false if there is no state saved under the key.
+     * @throws IOException If the state cannot be read.
+     */
+    private boolean load(Simulator simulator, Path file, String description) throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if(in.readInt() != MAGIC || !in.readUTF().equals(description)) {
+                // Another key with the same hash, which is replaced.
+                return false;
+            }
+            simulator.loadState(in);
+        }
+        catch(NoSuchFileException e) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch(NoSuchFileException e) {
+            // Removed by another JVM since being read.
+        }
+        return true;
+    }
+
+    /**
+     * Save the state of a simulator under a key.
+     * @param simulator The simulator.
+     * @param file The file of the state.
+     * @param description The description of its key.
+     * @throws IOException If the state cannot be written.
+     */
+    private void save(Simulator simulator, Path file, String description) throws IOException
+    {
+        Path temporary = Files.createTempFile(directory, "warm", ".tmp");
+        try {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(description);
+                // Saving does not use random numbers, so the run is unchanged.
+                simulator.saveState(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Remove the states least recently used until the rest fit.
+     * @param kept A state that is never removed, as it was just saved.
+     * @throws IOException If the directory cannot be read.
+     */
+    private void evict(Path kept) throws IOException
+    {
+        List<Path> files = listStates();
+        long[] modified = new long[files.size()];
+        long size = 0;
+        for(int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            size += sizeOf(file);
+            modified[i] = lastModified(file);
+        }
+        List<Integer> order = new ArrayList<>();
+        for(int i = 0; i < files.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Long.compare(modified[a], modified[b]));
+        for(int i : order) {
+            if(size <= maxBytes) {
+                break;
+            }
+            Path file = files.get(i);
+            if(!file.equals(kept)) {
+                long bytes = sizeOf(file);
+                Files.deleteIfExists(file);
+                size -= bytes;
+            }
+        }
+    }
+
+    /**
+     * @return The files of the states saved.
+     * @throws IOException If the directory cannot be read.
+     */
+    private List<Path> listStates() throws IOException
+    {
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> listing = Files.list(directory)) {
+            listing.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * @param file A file.
+     * @return Its size in bytes, or 0 if it has been removed.
+     */
+    private static long sizeOf(Path file) throws IOException
+    {
+        try {
+            return Files.size(file);
+        }
+        catch(NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param file A file.
+     * @return When it was last modified, or 0 if it has been removed.
+     */
+    private static long lastModified(Path file) throws IOException
+    {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+        catch(NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Describe everything that decides the state after a burn-in, in
+     * the same way whatever order the parameters are given in.
+     * @return The description.
+     */
+    private static String describe(Field field, long seed, int burnIn,
+                                   Map<Class<?>, Double> probabilities, Map<String, Double> parameters)
+    {
+        StringBuilder description = new StringBuilder();
+        description.append("format=").append(FORMAT_VERSION)
+            .append(" depth=").append(field.getDepth())
+            .append(" width=").append(field.getWidth())
+            .append(" seed=").append(seed)
+            .append(" burnIn=").append(burnIn);
+        Map<String, Double> sorted = new TreeMap<>(parameters);
+        for(Map.Entry<Class<?>, Double> entry : probabilities.entrySet()) {
+            sorted.put("create." + entry.getKey().getName(), entry.getValue());
+        }
+        for(Map.Entry<String, Double> entry : sorted.entrySet()) {
+            description.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return description.toString();
+    }
+
+    /**
+     * @param description The description of a key.
+     * @return Its SHA-256 hash, in hexadecimal.
+     */
+    private static String hash(String description)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+        catch(NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
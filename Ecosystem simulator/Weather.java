@@ -48,9 +48,17 @@ public class Weather
      * a random weather condition.
      */
     public static void cycle(){
-        Random rand = new Random();
+        Random rand = Randomizer.getRandom();
         int x = rand.nextInt(numOfWeathers);
+        String previous = curWeather;
         setWeather(x);
+
+        WeatherChangeEvent event = new WeatherChangeEvent();
+        if(event.shouldCommit()) {
+            event.previous = previous;
+            event.weather = curWeather;
+            event.commit();
+        }
     }
     
     /**
@@ -62,6 +70,18 @@ public class Weather
         curWeather = weather;
     }
     
+    /**
+     * Sets the current weather condition by name.
+     * @param name The name of the weather, such as "rain".
+     */
+    public static void setWeather(String name){
+        int x = allWeatherTypes.indexOf(name);
+        if (x < 0) {
+            throw new IllegalArgumentException("Unknown weather " + name);
+        }
+        setWeather(x);
+    }
+    
     /**
      * @return The current weather condition.
      */
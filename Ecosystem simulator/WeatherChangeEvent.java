@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a cycle of the weather.
+ *
+ * @author Amman Kiani and Aarjav Jain
+ * @version 2021.02.24
+ */
+@Name("savannah.WeatherChange")
+@Label("Weather Change")
+@Category("Savannah")
+@Description("The weather was cycled")
+public class WeatherChangeEvent extends jdk.jfr.Event
+{
+    @Label("Previous Weather")
+    String previous;
+
+    @Label("Weather")
+    String weather;
+}